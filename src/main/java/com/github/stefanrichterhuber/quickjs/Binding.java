@@ -0,0 +1,17 @@
+package com.github.stefanrichterhuber.quickjs;
+
+/**
+ * Defines how collection values are bound between Java and JS.
+ */
+public enum Binding {
+    /**
+     * The value is copied completely when it passes the boundary between Java and
+     * JS. Nested values are copied recursively.
+     */
+    EAGER,
+    /**
+     * The value is not copied, but wrapped into a view which fetches its entries
+     * on demand from the other side.
+     */
+    LAZY
+}
@@ -0,0 +1,111 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A QuickJSArray is a lazy {@link List} view of a JS array in a
+ * QuickJSContext. Instead of copying the complete array, elements are fetched
+ * from JS on demand. Like {@link java.util.Arrays#asList(Object...)} the view
+ * has a fixed size, but elements can be replaced with {@link #set(int, Object)}.
+ * Element accesses are subject to the same runtime limits as invoking a
+ * function, since they might call getters or setters. To avoid calling
+ * getters, {@link #set(int, Object)} does not fetch the previous element and
+ * always returns null. Since the QuickJSArray represents a native resource, it
+ * is released when it is unreachable or its QuickJSContext is closed. This
+ * class is not meant to be instantiated from the Java runtime, but only from
+ * the native library, therefore its constructor is package-private.
+ *
+ * @see QuickJSContext#withResultBinding(Binding)
+ */
+public final class QuickJSArray extends AbstractList<Object> implements RandomAccess {
+    /**
+     * Native pointer to js array. Read by the native library, 0 if the
+     * QuickJSContext is closed.
+     */
+    long ptr;
+
+    /**
+     * QuickJSContext this array is bound to. Read by the native library, which
+     * only unwraps the view when it is passed back to this context.
+     */
+    private final QuickJSContext ctx;
+
+    /**
+     * Clean up native references to this array
+     *
+     * @param ptr Native pointer to the js array
+     */
+    private static native void closeArray(long ptr);
+
+    private native int getLength(long ptr);
+
+    private native Object getElement(long ptr, QuickJSContext ctx, int index);
+
+    private native void setElement(long ptr, QuickJSContext ctx, int index, Object value);
+
+    /**
+     * Creates a new QuickJSArray instance. This constructor is meant to be called
+     * by the native library and therefore is not public
+     *
+     * @param ptr     Native pointer to the js array. Must not be 0.
+     * @param context QuickJSContext this array is bound to. Used for resource
+     *                management, must not be null.
+     */
+    QuickJSArray(long ptr, QuickJSContext context) {
+        if (ptr == 0) {
+            throw new IllegalArgumentException("Pointer must not be 0");
+        }
+        if (context == null) {
+            throw new IllegalArgumentException("Context must not be null");
+        }
+        this.ptr = ptr;
+        this.ctx = context;
+        // Resource management is delegated to the QuickJSContext of the array
+        context.registerView(this, ptr, QuickJSArray::closeArray);
+    }
+
+    /**
+     * Returns the native pointer to the js array. First checks if the array is
+     * still valid.
+     */
+    private long getArrayPointer() {
+        if (ptr == 0) {
+            throw new IllegalStateException("QuickJSArray already closed!");
+        }
+        return ptr;
+    }
+
+    @Override
+    public Object get(int index) {
+        final long p = getArrayPointer();
+        if (index < 0 || index >= getLength(p)) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return ctx.accessView(this, () -> getElement(p, ctx, index));
+    }
+
+    /**
+     * Replaces the element of the js array
+     *
+     * @return Always null, the previous element is not fetched
+     */
+    @Override
+    public Object set(int index, Object element) {
+        final long p = getArrayPointer();
+        if (index < 0 || index >= getLength(p)) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        ctx.accessView(this, () -> {
+            setElement(p, ctx, index, element);
+            return null;
+        });
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return getLength(getArrayPointer());
+    }
+}
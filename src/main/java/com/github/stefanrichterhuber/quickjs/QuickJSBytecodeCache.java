@@ -0,0 +1,377 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Persistent cache of compiled scripts in a directory. Each entry is keyed by
+ * the SHA-256 hash of the bytecode version of the native library, the script
+ * name and the script source, so scripts compiled once are loaded from disk
+ * instead of being parsed again, even after a restart of the JVM. Entries are
+ * protected by a CRC32 checksum; corrupt entries are removed and the script is
+ * compiled again. If the total size of all entries exceeds the configured
+ * limit, the least recently used entries are evicted.
+ * <p>
+ * Bytecode is loaded without further verification by QuickJS, so the cache
+ * directory must not be writable by untrusted parties. The checksum only
+ * detects accidental damage, not tampering. The cache is thread
+ * safe and can be shared by multiple {@link QuickJSRuntime}s.
+ *
+ * @see QuickJSRuntime#withBytecodeCache(QuickJSBytecodeCache)
+ */
+public final class QuickJSBytecodeCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * File extension of cache entries
+     */
+    private static final String EXTENSION = ".qjsc";
+
+    /**
+     * Magic number at the start of each cache entry ("QJSC")
+     */
+    private static final int MAGIC = 0x514A5343;
+
+    /**
+     * Version of the entry file format
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the header: magic, format version, bytecode length and CRC32 of the
+     * bytecode
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    /**
+     * Directory containing the cache entries
+     */
+    private final Path directory;
+
+    /**
+     * Maximum total size of all cache entries in bytes
+     */
+    private long maxSize = Long.MAX_VALUE;
+
+    /**
+     * Read entries with memory-mapped files
+     */
+    private boolean memoryMapped = false;
+
+    /**
+     * Current total size of all cache entries in bytes
+     */
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new bytecode cache in the given directory. The directory is
+     * created if it does not exist yet, existing entries are reused.
+     *
+     * @param directory Directory to store the compiled scripts in
+     * @throws UncheckedIOException if the directory could not be created or read
+     */
+    public QuickJSBytecodeCache(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must not be null");
+        }
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            long total = 0;
+            for (Path entry : entries()) {
+                total += Files.size(entry);
+            }
+            this.size.set(total);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open bytecode cache in " + directory, e);
+        }
+        LOGGER.debug("Opened bytecode cache in {} with {} bytes", directory, size.get());
+    }
+
+    /**
+     * Limits the total size of all entries in the cache. If the limit is exceeded,
+     * the least recently used entries are evicted.
+     *
+     * @param maxSize Maximum size in bytes
+     * @return this QuickJSBytecodeCache instance for method chaining.
+     */
+    public QuickJSBytecodeCache withMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+        evict();
+        return this;
+    }
+
+    /**
+     * Reads cache entries with memory-mapped files instead of regular file reads.
+     *
+     * @param memoryMapped true to use memory-mapped files
+     * @return this QuickJSBytecodeCache instance for method chaining.
+     */
+    public QuickJSBytecodeCache withMemoryMapping(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    /**
+     * Returns the compiled script for the given source. If the cache contains a
+     * valid entry it is loaded, otherwise the script is compiled in the given
+     * context and stored in the cache.
+     *
+     * @param context Context to compile the script in if it is not cached
+     * @param name    Name of the script
+     * @param source  Source of the script
+     * @return Compiled script
+     */
+    QuickJSScript compile(QuickJSContext context, String name, String source) {
+        final Path entry = directory.resolve(key(name, source) + EXTENSION);
+
+        final byte[] cached = read(entry);
+        if (cached != null) {
+            hits.incrementAndGet();
+            LOGGER.debug("Loaded script {} from bytecode cache {}", name, entry);
+            return new QuickJSScript(name, cached);
+        }
+
+        misses.incrementAndGet();
+        final QuickJSScript script = context.compileUncached(name, source);
+        write(entry, script.getBytecode());
+        return script;
+    }
+
+    /**
+     * Number of scripts loaded from the cache
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of scripts which had to be compiled
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Current total size of all entries in the cache
+     *
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public synchronized void clear() {
+        try {
+            for (Path entry : entries()) {
+                delete(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear bytecode cache in " + directory, e);
+        }
+    }
+
+    /**
+     * Calculates the key of a script
+     */
+    private static String key(String name, String source) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(QuickJSRuntime.bytecodeVersion().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(name).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads and verifies the bytecode of an entry. Corrupt entries are deleted.
+     *
+     * @param entry Path of the entry
+     * @return Bytecode or null if the entry does not exist or is corrupt
+     */
+    private byte[] read(Path entry) {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final ByteBuffer buffer;
+            if (memoryMapped) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            } else {
+                buffer = ByteBuffer.allocate((int) fileSize);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read the complete file
+                }
+                buffer.flip();
+            }
+
+            final byte[] bytecode = verify(buffer);
+            if (bytecode == null) {
+                LOGGER.warn("Removing corrupt entry {} from bytecode cache", entry);
+                delete(entry);
+                return null;
+            }
+            // Last modified time is used to find the least recently used entries
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytecode;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read entry {} from bytecode cache", entry, e);
+            return null;
+        }
+    }
+
+    /**
+     * Verifies header and checksum of an entry
+     *
+     * @return Bytecode or null if the entry is corrupt
+     */
+    private static byte[] verify(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+        final int length = buffer.getInt();
+        final long checksum = buffer.getLong();
+        if (length <= 0 || length != buffer.remaining()) {
+            return null;
+        }
+        final byte[] bytecode = new byte[length];
+        buffer.get(bytecode);
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytecode);
+        return crc.getValue() == checksum ? bytecode : null;
+    }
+
+    /**
+     * Writes a new entry. The entry is written to a temporary file first and then
+     * moved, so concurrent readers never see an incomplete entry.
+     */
+    private void write(Path entry, byte[] bytecode) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytecode);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bytecode.length)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(bytecode.length)
+                .putLong(crc.getValue())
+                .put(bytecode)
+                .flip();
+
+        try {
+            final Path tmp = Files.createTempFile(directory, "entry", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                final long previous = Files.exists(entry) ? Files.size(entry) : 0;
+                Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                size.addAndGet(buffer.capacity() - previous);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization, the compiled script is still usable
+            LOGGER.warn("Failed to write entry {} to bytecode cache", entry, e);
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size is within the
+     * limit
+     */
+    private synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        try {
+            record Entry(Path path, FileTime lastUsed) {
+            }
+            final List<Entry> entries = new ArrayList<>();
+            for (Path path : entries()) {
+                entries.add(new Entry(path, Files.getLastModifiedTime(path)));
+            }
+            entries.sort(Comparator.comparing(Entry::lastUsed));
+
+            for (Entry entry : entries) {
+                if (size.get() <= maxSize) {
+                    break;
+                }
+                LOGGER.debug("Evicting entry {} from bytecode cache", entry.path());
+                delete(entry.path());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to evict entries from bytecode cache in {}", directory, e);
+        }
+    }
+
+    /**
+     * Deletes an entry and updates the total size
+     */
+    private void delete(Path entry) throws IOException {
+        try {
+            final long entrySize = Files.size(entry);
+            if (Files.deleteIfExists(entry)) {
+                size.addAndGet(-entrySize);
+            }
+        } catch (NoSuchFileException e) {
+            // Already deleted concurrently
+        }
+    }
+
+    /**
+     * Lists all entries in the cache directory
+     */
+    private List<Path> entries() throws IOException {
+        final List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(result::add);
+        }
+        return result;
+    }
+}
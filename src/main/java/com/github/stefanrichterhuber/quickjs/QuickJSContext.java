@@ -1,15 +1,27 @@
 package com.github.stefanrichterhuber.quickjs;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
@@ -23,41 +35,6 @@ import org.apache.logging.log4j.Logger;
 public class QuickJSContext implements AutoCloseable {
     private static final Logger LOGGER = LogManager.getLogger();
 
-    /**
-     * Invocation handler for java dynamic proxies which passes all method
-     * invocations to the underlying scripting context
-     */
-    private static class Proxy implements InvocationHandler {
-        private final String namespace;
-        private final QuickJSContext context;
-
-        Proxy(QuickJSContext context, String namespace) {
-            this.namespace = namespace;
-            this.context = context;
-        }
-
-        @Override
-        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (method.isDefault()) {
-                return InvocationHandler.invokeDefault(proxy, method, args);
-            }
-            String name = method.getName();
-            if (namespace != null) {
-                name = namespace + "." + name;
-            }
-            return context.invoke(name, args);
-        }
-
-        @SuppressWarnings("unchecked")
-        static <T> T create(
-                QuickJSContext context, String namespace,
-                Class<T> clazz) {
-            return (T) java.lang.reflect.Proxy.newProxyInstance(clazz.getClassLoader(), new Class[] { clazz },
-                    new Proxy(context, namespace));
-        }
-
-    }
-
     /**
      * Reference to the underlying runtime, owning this context
      */
@@ -74,6 +51,52 @@ public class QuickJSContext implements AutoCloseable {
      */
     private final Set<AutoCloseable> dependedResources = new HashSet<>();
 
+    /**
+     * Lazy view ({@link QuickJSObject} or {@link QuickJSArray}) of a JS value
+     *
+     * @param view    The view, which might already be unreachable
+     * @param ptr     Native pointer to the JS value
+     * @param release Releases the native pointer
+     */
+    private record View(WeakReference<Object> view, long ptr, LongConsumer release) {
+    }
+
+    /**
+     * Lazy views of this context by their id. Unlike other dependent resources
+     * they are released as soon as they are unreachable.
+     */
+    private final Map<Long, View> views = new HashMap<>();
+
+    /**
+     * Ids of views which became unreachable. Filled by the cleaner thread, the
+     * views are released by the thread using this context.
+     */
+    private final Queue<Long> unreachableViews = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Id of the next registered view. Ids are never reused, unlike native
+     * pointers.
+     */
+    private long nextViewId;
+
+    /**
+     * If true, JS objects and arrays are returned as lazy views
+     * ({@link QuickJSObject} and {@link QuickJSArray}) instead of copies. Read by
+     * the native layer.
+     */
+    private boolean lazyResults;
+
+    /**
+     * Native handles of JS Promises waiting for the completion of a Java
+     * {@link CompletionStage}
+     */
+    private final Set<Long> pendingPromises = new HashSet<>();
+
+    /**
+     * Timers of this context, null unless enabled with {@link #withEventLoop()}
+     */
+    private QuickJSEventLoop eventLoop;
+
     /**
      * Create a new native QuickJS context
      */
@@ -94,6 +117,16 @@ public class QuickJSContext implements AutoCloseable {
      */
     private native void setGlobal(long ptr, String name, Object value);
 
+    /**
+     * Sets a global variable in the native QuickJS context to a JS Proxy, which
+     * forwards all property accesses to the given map.
+     * 
+     * @param ptr   Native pointer to the QuickJS context
+     * @param name  Name of the variable
+     * @param value Map to bind
+     */
+    private native void setLazyGlobal(long ptr, String name, Map<String, Object> value);
+
     /**
      * Gets a global variable from the native QuickJS context. The JS value gets
      * converted into a Java value in the native layer.
@@ -123,12 +156,95 @@ public class QuickJSContext implements AutoCloseable {
      */
     private native Object invoke(long ptr, String name, Object... args);
 
+    /**
+     * Invokes a JS function once for each tuple of arguments
+     *
+     * @param ptr     Native pointer to the QuickJS context
+     * @param name    Name of the function
+     * @param tuples  Arguments of each call
+     * @param results Array to store the result of each call in
+     */
+    private native void invokeBatch(long ptr, String name, Object[][] tuples, Object[] results);
+
+    /**
+     * Resolves a JS function by its name
+     *
+     * @param ptr  Native pointer to the QuickJS context
+     * @param name Name of the function
+     * @return Function
+     */
+    private native QuickJSFunction lookupFunction(long ptr, String name);
+
+    /**
+     * Compiles a JS script to bytecode in the native layer
+     *
+     * @param ptr    Native pointer to the QuickJS context
+     * @param name   Name of the script
+     * @param source Source of the script
+     * @return Bytecode of the script
+     */
+    private native byte[] compile(long ptr, String name, String source);
+
+    /**
+     * Executes compiled bytecode in the native layer
+     *
+     * @param ptr      Native pointer to the QuickJS context
+     * @param bytecode Bytecode to execute
+     * @return Result of the script
+     */
+    private native Object execute(long ptr, byte[] bytecode);
+
+    /**
+     * Removes a global variable from the context
+     *
+     * @param ptr  Native pointer to the QuickJS context
+     * @param name Name of the variable
+     */
+    private native void removeGlobal(long ptr, String name);
+
+    /**
+     * Returns the names of all enumerable global variables
+     *
+     * @param ptr Native pointer to the QuickJS context
+     * @return Names of the variables
+     */
+    private native String[] getGlobalNames(long ptr);
+
+    /**
+     * Settles a JS Promise created for a Java CompletionStage
+     *
+     * @param ptr     Native pointer to the QuickJS context
+     * @param promise Native handle of the Promise
+     * @param value   Value to resolve the Promise with
+     * @param error   Error to reject the Promise with, null to resolve it
+     */
+    private native void settlePromise(long ptr, long promise, Object value, Throwable error);
+
+    /**
+     * Releases a JS Promise created for a Java CompletionStage without settling
+     * it
+     *
+     * @param promise Native handle of the Promise
+     */
+    private static native void releasePromise(long promise);
+
+    /**
+     * Detaches the JS ArrayBuffer stored in the given global variable
+     *
+     * @param ptr  Native pointer to the QuickJS context
+     * @param name Name of the variable
+     */
+    private native void detachArrayBuffer(long ptr, String name);
+
     /**
      * First closes all dependent resources and then this context
      */
     @Override
     public void close() throws Exception {
         if (ptr != 0) {
+            if (eventLoop != null) {
+                eventLoop.close();
+            }
             for (AutoCloseable f : dependedResources) {
                 try {
                     f.close();
@@ -136,6 +252,22 @@ public class QuickJSContext implements AutoCloseable {
                     LOGGER.error("Failed to close context dependent resource", e);
                 }
             }
+            for (View v : views.values()) {
+                final Object view = v.view().get();
+                if (view instanceof QuickJSObject o) {
+                    o.ptr = 0;
+                } else if (view instanceof QuickJSArray a) {
+                    a.ptr = 0;
+                }
+                v.release().accept(v.ptr());
+            }
+            views.clear();
+            unreachableViews.clear();
+            for (long promise : pendingPromises) {
+                releasePromise(promise);
+            }
+            runtime.updatePendingCompletions(-pendingPromises.size());
+            pendingPromises.clear();
             closeContext(ptr);
             ptr = 0;
         }
@@ -151,6 +283,57 @@ public class QuickJSContext implements AutoCloseable {
         this.ptr = createContext(runtime.getRuntimePointer());
     }
 
+    /**
+     * Sets how JS objects and arrays are returned to Java (from
+     * {@link #eval(String)}, {@link #invoke(String, Object...)},
+     * {@link #getGlobal(String)} and as arguments of Java functions called by JS).
+     * With {@link Binding#EAGER} (the default) they are copied recursively into a
+     * {@link java.util.HashMap} or {@link java.util.ArrayList}. With
+     * {@link Binding#LAZY} they are returned as {@link QuickJSObject} and
+     * {@link QuickJSArray}, which fetch their values on demand from JS. Lazy views
+     * are only valid as long as this context is open.
+     * 
+     * @param binding Binding for returned objects and arrays
+     * @return this QuickJSContext instance for method chaining.
+     */
+    public QuickJSContext withResultBinding(Binding binding) {
+        this.lazyResults = binding == Binding.LAZY;
+        return this;
+    }
+
+    /**
+     * Enables timers in this context: <code>setTimeout</code>,
+     * <code>setInterval</code>, <code>clearTimeout</code>,
+     * <code>clearInterval</code> and <code>queueMicrotask</code>. Pending timers
+     * wait on a scheduler shared by all contexts. Due timers are executed together
+     * with the other pending jobs by {@link QuickJSRuntime#executePendingJobs(int)}
+     * and {@link QuickJSRuntime#runEventLoop(java.time.Duration)}.
+     * 
+     * @return this QuickJSContext instance for method chaining.
+     */
+    public QuickJSContext withEventLoop() {
+        return withEventLoop(QuickJSEventLoop.defaultScheduler());
+    }
+
+    /**
+     * Enables timers in this context, waiting on the given scheduler. See
+     * {@link #withEventLoop()}.
+     * 
+     * @param scheduler Scheduler for pending timers. Its threads only queue due
+     *                  timers, so a single thread can serve many contexts.
+     * @return this QuickJSContext instance for method chaining.
+     */
+    public QuickJSContext withEventLoop(ScheduledExecutorService scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Scheduler must not be null");
+        }
+        if (eventLoop != null) {
+            throw new IllegalStateException("Event loop already enabled");
+        }
+        this.eventLoop = new QuickJSEventLoop(this, runtime, scheduler);
+        return this;
+    }
+
     /**
      * Returns the native pointer to the QuickJS context. First check if this
      * context is still active at all (a native QuickJS context exists)
@@ -175,6 +358,59 @@ public class QuickJSContext implements AutoCloseable {
         return result;
     }
 
+    /**
+     * Removes the global variable with the given name. Variables declared with
+     * <code>var</code> or <code>function</code> can not be deleted in JS, they are
+     * set to <code>undefined</code> instead.
+     * 
+     * @param name Name of the variable
+     */
+    public void removeGlobal(String name) {
+        this.removeGlobal(getContextPointer(), name);
+    }
+
+    /**
+     * Returns the names of all enumerable global variables, e.g. variables added
+     * by {@link #setGlobal(String, String)} or declared with <code>var</code>.
+     * Built-in globals are not enumerable.
+     * 
+     * @return Names of the global variables
+     */
+    Set<String> getGlobalNames() {
+        return new HashSet<>(Arrays.asList(this.getGlobalNames(getContextPointer())));
+    }
+
+    /**
+     * Called by the native layer if a Java {@link CompletionStage} is passed to
+     * JS. The JS Promise is settled within
+     * {@link QuickJSRuntime#executePendingJobs(int)} after the stage completed,
+     * so JS is never called from the thread completing the stage.
+     *
+     * @param stage   CompletionStage passed to JS
+     * @param promise Native handle of the JS Promise
+     */
+    void registerPromise(CompletionStage<?> stage, long promise) {
+        pendingPromises.add(promise);
+        runtime.updatePendingCompletions(1);
+        stage.whenComplete((value, error) -> runtime.enqueueCompletion(() -> settlePromise(promise, value, error)));
+    }
+
+    /**
+     * Settles a JS Promise registered with
+     * {@link #registerPromise(CompletionStage, long)}. Ignored if the context was
+     * closed in the meantime.
+     */
+    private void settlePromise(long promise, Object value, Throwable error) {
+        if (ptr == 0 || !pendingPromises.remove(promise)) {
+            return;
+        }
+        runtime.updatePendingCompletions(-1);
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        this.settlePromise(ptr, promise, value, error);
+    }
+
     /**
      * Adds a global variable to the context.
      * 
@@ -185,6 +421,28 @@ public class QuickJSContext implements AutoCloseable {
         this.setGlobal(getContextPointer(), name, value);
     }
 
+    /**
+     * Adds a global variable to the context. With {@link Binding#EAGER} the map is
+     * copied into a JS object (see {@link #setGlobal(String, Map)}). With
+     * {@link Binding#LAZY} no entries are copied, instead JS gets a Proxy object
+     * whose property accesses (read, write, delete, <code>in</code>,
+     * <code>Object.keys()</code>...) are forwarded on demand to the map. Changes
+     * on either side are therefore visible on the other one. Nested maps are bound
+     * lazily, too. This is much faster for large maps of which scripts only
+     * access a few keys.
+     * 
+     * @param name    Name of the variable
+     * @param value   Value of the variable
+     * @param binding How the map is bound to JS
+     */
+    public void setGlobal(String name, Map<String, Object> value, Binding binding) {
+        if (binding == Binding.LAZY) {
+            this.setLazyGlobal(getContextPointer(), name, value);
+        } else {
+            this.setGlobal(getContextPointer(), name, value);
+        }
+    }
+
     /**
      * Adds a global variable to the context.
      * 
@@ -248,6 +506,95 @@ public class QuickJSContext implements AutoCloseable {
         this.setGlobal(getContextPointer(), name, value);
     }
 
+    /**
+     * Adds a global variable to the context. The array is copied with a single
+     * bulk copy to a JS Int8Array.
+     * 
+     * @param name  Name of the variable
+     * @param value Value of the variable
+     */
+    public void setGlobal(String name, byte[] value) {
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Adds a global variable to the context. The array is copied with a single
+     * bulk copy to a JS Int32Array.
+     * 
+     * @param name  Name of the variable
+     * @param value Value of the variable
+     */
+    public void setGlobal(String name, int[] value) {
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Adds a global variable to the context. The array is copied with a single
+     * bulk copy to a JS BigInt64Array.
+     * 
+     * @param name  Name of the variable
+     * @param value Value of the variable
+     */
+    public void setGlobal(String name, long[] value) {
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Adds a global variable to the context. The array is copied with a single
+     * bulk copy to a JS Float32Array.
+     * 
+     * @param name  Name of the variable
+     * @param value Value of the variable
+     */
+    public void setGlobal(String name, float[] value) {
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Adds a global variable to the context. The array is copied with a single
+     * bulk copy to a JS Float64Array.
+     * 
+     * @param name  Name of the variable
+     * @param value Value of the variable
+     */
+    public void setGlobal(String name, double[] value) {
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Shares a direct ByteBuffer with the context. JS sees the complete capacity
+     * of the buffer (position and limit are ignored) as an ArrayBuffer backed by
+     * the same native memory, so changes on either side are immediately visible on
+     * the other one without any copy. The ByteBuffer is kept alive as long as the
+     * ArrayBuffer is reachable in JS or until it is detached with
+     * {@link #detachArrayBuffer(String)}. If the ArrayBuffer is returned from JS,
+     * it is mapped back to the original ByteBuffer.
+     * 
+     * @param name  Name of the variable
+     * @param value Direct ByteBuffer to share
+     * @throws IllegalArgumentException if the buffer is not direct
+     */
+    public void setGlobal(String name, ByteBuffer value) {
+        if (value != null && !value.isDirect()) {
+            throw new IllegalArgumentException("Only direct ByteBuffers can be shared with JS");
+        }
+        this.setGlobal(getContextPointer(), name, value);
+    }
+
+    /**
+     * Detaches the ArrayBuffer stored in the global variable with the given name.
+     * Afterwards JS can not access its memory anymore (its byteLength is 0) and,
+     * if it is backed by a shared ByteBuffer, the reference to the ByteBuffer is
+     * released. Detach an ArrayBuffer before the memory of the shared ByteBuffer is
+     * freed or reused.
+     * 
+     * @param name Name of the variable
+     * @throws IllegalArgumentException if the variable is not an ArrayBuffer
+     */
+    public void detachArrayBuffer(String name) {
+        this.detachArrayBuffer(getContextPointer(), name);
+    }
+
     /**
      * Adds a global function to the context.
      * 
@@ -319,14 +666,41 @@ public class QuickJSContext implements AutoCloseable {
     }
 
     /**
-     * Evaluates a JavaScript script and returns the result.
+     * Evaluates a JavaScript script and returns the result. If the runtime has a
+     * script cache enabled, the compiled script is taken from the cache.
      * 
      * @param script Script to execute
      * @return Result from the script. Will be either null, or of one of the
      *         supported java types
+     * @see QuickJSRuntime#withScriptCache(long)
      */
     public Object eval(String script) {
-        this.runtime.scriptStarted();
+        return evalWithTimeout(script, null);
+    }
+
+    /**
+     * Evaluates a JavaScript script with a timeout and returns the result. The
+     * script is interrupted when either the timeout or the script runtime limit of
+     * the runtime is reached. If the script is nested in another one (e.g. called
+     * by a Java function called from JS), it is interrupted at the latest when the
+     * outer script reaches its deadline.
+     * 
+     * @param script  Script to execute
+     * @param timeout Maximum time the script is allowed to run
+     * @return Result from the script. Will be either null, or of one of the
+     *         supported java types
+     * @see QuickJSRuntime#withScriptRuntimeLimit(long, java.util.concurrent.TimeUnit)
+     */
+    public Object eval(String script, Duration timeout) {
+        return evalWithTimeout(script, checkTimeout(timeout));
+    }
+
+    private Object evalWithTimeout(String script, Duration timeout) {
+        final QuickJSScript cached = this.runtime.cachedScript(this, script);
+        if (cached != null) {
+            return execute(cached, timeout);
+        }
+        this.runtime.scriptStarted(this, timeout);
         try {
             final Object result = this.eval(getContextPointer(), script);
             return result;
@@ -335,6 +709,61 @@ public class QuickJSContext implements AutoCloseable {
         }
     }
 
+    /**
+     * Compiles a JavaScript script to QuickJS bytecode without executing it. The
+     * returned script can be executed repeatedly (in this or any other context)
+     * without parsing the source again. If the runtime has a
+     * {@link QuickJSBytecodeCache}, the bytecode is loaded from the cache if
+     * possible.
+     * 
+     * @param name   Name of the script, used as file name in exceptions
+     * @param source Source of the script
+     * @return Compiled script
+     * @throws QuickJSScriptException if the script contains syntax errors
+     */
+    public QuickJSScript compile(String name, String source) {
+        final QuickJSBytecodeCache cache = runtime.getBytecodeCache();
+        if (cache != null) {
+            return cache.compile(this, name, source);
+        }
+        return compileUncached(name, source);
+    }
+
+    /**
+     * Compiles a JavaScript script to QuickJS bytecode, bypassing any configured
+     * bytecode cache.
+     * 
+     * @param name   Name of the script
+     * @param source Source of the script
+     * @return Compiled script
+     */
+    QuickJSScript compileUncached(String name, String source) {
+        this.runtime.updateStackTop();
+        final byte[] bytecode = this.compile(getContextPointer(), name, source);
+        return new QuickJSScript(name, bytecode);
+    }
+
+    /**
+     * Executes a compiled script in this context and returns the result.
+     * 
+     * @param script Script to execute
+     * @return Result from the script. Will be either null, or of one of the
+     *         supported java types
+     */
+    Object execute(QuickJSScript script) {
+        return execute(script, null);
+    }
+
+    private Object execute(QuickJSScript script, Duration timeout) {
+        this.runtime.scriptStarted(this, timeout);
+        try {
+            final Object result = this.execute(getContextPointer(), script.getBytecode());
+            return result;
+        } finally {
+            this.runtime.scriptFinished();
+        }
+    }
+
     /**
      * Invokes a JavaScript function and returns the result. It could be both a Java
      * function passed to the context as well as a previously defined native JS
@@ -347,7 +776,28 @@ public class QuickJSContext implements AutoCloseable {
      *         supported java types
      */
     public Object invoke(String name, Object... args) {
-        this.runtime.scriptStarted();
+        return invokeWithTimeout(null, name, args);
+    }
+
+    /**
+     * Invokes a JavaScript function with a timeout and returns the result. The
+     * function is interrupted when either the timeout or the script runtime limit
+     * of the runtime is reached. If the call is nested in another script, it is
+     * interrupted at the latest when the outer script reaches its deadline.
+     * 
+     * @param timeout Maximum time the function is allowed to run
+     * @param name    Name of the function to invoke
+     * @param args    Arguments to pass to the function
+     * @return Result from the function call. Will be either null, or of one of
+     *         the supported java types
+     * @see #invoke(String, Object...)
+     */
+    public Object invoke(Duration timeout, String name, Object... args) {
+        return invokeWithTimeout(checkTimeout(timeout), name, args);
+    }
+
+    private Object invokeWithTimeout(Duration timeout, String name, Object[] args) {
+        this.runtime.scriptStarted(this, timeout);
         try {
             final Object result = this.invoke(getContextPointer(), name, args);
             return result;
@@ -356,12 +806,118 @@ public class QuickJSContext implements AutoCloseable {
         }
     }
 
+    private static Duration checkTimeout(Duration timeout) {
+        if (timeout == null || timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout must not be null or negative");
+        }
+        return timeout;
+    }
+
+    /**
+     * Resolves a JavaScript function once and returns a handle to it. Calling the
+     * handle skips resolving the name, which {@link #invoke(String, Object...)}
+     * does on every call. The handle keeps referring to the same function, even if
+     * the global variable is changed later, and is valid as long as this context
+     * is open. Calls of the handle are subject to the same limits as
+     * {@link #invoke(String, Object...)}.
+     * 
+     * @param path Name of the function. Functions of nested objects are separated
+     *             by dots (e.g. <code>obj.o.f</code>)
+     * @return Handle of the function
+     */
+    public QuickJSFunction lookupFunction(String path) {
+        return this.lookupFunction(getContextPointer(), path);
+    }
+
+    /**
+     * Calls a function of this context with the same runtime limits as
+     * {@link #invoke(String, Object...)}
+     */
+    Object call(QuickJSFunction function, Object[] args) {
+        this.runtime.scriptStarted(this);
+        try {
+            return function.call(args);
+        } finally {
+            this.runtime.scriptFinished();
+        }
+    }
+
+    /**
+     * Invokes a JavaScript function once for each tuple of arguments. The function
+     * is resolved only once and all calls are executed within a single native
+     * call, which is much faster than calling {@link #invoke(String, Object...)}
+     * for each tuple. The script runtime limit applies to the batch as a whole.
+     * 
+     * @param name      Name of the function to invoke
+     * @param argTuples Arguments of each call
+     * @return Results of the calls, in the order of the argument tuples
+     */
+    public List<Object> invokeBatch(String name, List<Object[]> argTuples) {
+        final Object[] results = new Object[argTuples.size()];
+        invokeBatch(name, argTuples.toArray(new Object[0][]), results);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Invokes a JavaScript function once for each tuple of arguments and stores
+     * the results in the given array. See {@link #invokeBatch(String, List)}. If a
+     * call fails, its exception is thrown and the results of all previous calls
+     * are already stored.
+     * 
+     * @param name      Name of the function to invoke
+     * @param argTuples Arguments of each call
+     * @param results   Array to store the results in, at the index of the argument
+     *                  tuple. Must be at least as long as argTuples.
+     */
+    public void invokeBatch(String name, Object[][] argTuples, Object[] results) {
+        if (results.length < argTuples.length) {
+            throw new IllegalArgumentException("Result array is shorter than the number of argument tuples");
+        }
+        this.runtime.scriptStarted(this);
+        try {
+            this.invokeBatch(getContextPointer(), name, argTuples, results);
+        } finally {
+            this.runtime.scriptFinished();
+        }
+    }
+
+    /**
+     * Evaluates a JavaScript script asynchronously on the executor of the runtime
+     * of this context. Cancelling the returned future interrupts the script if it
+     * is already running. While asynchronous scripts are pending, this context and
+     * its runtime must not be used by any other thread: scripts started by other
+     * threads fail with an {@link IllegalStateException}.
+     * 
+     * @param script Script to execute
+     * @return Future completed with the result from the script
+     */
+    public CompletableFuture<Object> evalAsync(String script) {
+        return this.runtime.submit(() -> eval(script));
+    }
+
+    /**
+     * Invokes a JavaScript function asynchronously on the executor of the runtime
+     * of this context. Cancelling the returned future interrupts the function if
+     * it is already running. While asynchronous scripts are pending, this context
+     * and its runtime must not be used by any other thread: scripts started by
+     * other threads fail with an {@link IllegalStateException}.
+     * 
+     * @param name Name of the function to invoke
+     * @param args Arguments to pass to the function
+     * @return Future completed with the result from the function call
+     */
+    public CompletableFuture<Object> invokeAsync(String name, Object... args) {
+        return this.runtime.submit(() -> invoke(name, args));
+    }
+
     /**
      * Creates a script-backed dynamic proxy for the given interface class. All
      * , but default methods (!), from the interface are passed as
      * {@link #invoke(String, Object...)} to the
      * script context. This gives the ability to have type-safe interfaces to the
-     * scripting environment.
+     * scripting environment. The JS function of each method is resolved with
+     * {@link #lookupFunction(String)} on its first call, later calls use the
+     * resolved function.
      * 
      * @param <T>       Type of the interface to proxy
      * @param namespace Optional name space (all method calls are prefixed with it.
@@ -372,7 +928,7 @@ public class QuickJSContext implements AutoCloseable {
      * @return Proxied instance of the interface
      */
     public <T> T getInterface(String namespace, Class<T> clazz) {
-        return Proxy.create(this,
+        return QuickJSInterfaceBinding.create(this,
                 namespace != null && namespace.endsWith(".") ? namespace.substring(0, namespace.length() - 1)
                         : namespace,
                 clazz);
@@ -386,6 +942,59 @@ public class QuickJSContext implements AutoCloseable {
         this.dependedResources.add(f);
     }
 
+    /**
+     * Registers a lazy view of a JS value. The native pointer of the view is
+     * released once the view is unreachable, or when this context is closed.
+     * Also releases the views which became unreachable since the last call.
+     *
+     * @param view    The view
+     * @param ptr     Native pointer to the JS value
+     * @param release Releases the native pointer
+     */
+    void registerView(Object view, long ptr, LongConsumer release) {
+        releaseUnreachableViews();
+        final long id = nextViewId++;
+        views.put(id, new View(new WeakReference<>(view), ptr, release));
+        // The cleaning action must neither refer to the view nor to this context
+        final Queue<Long> queue = unreachableViews;
+        QuickJSRuntime.CLEANER.register(view, () -> queue.add(id));
+    }
+
+    /**
+     * Releases the native pointers of all views which became unreachable. Must be
+     * called by the thread using this context, since the cleaner thread must not
+     * touch the QuickJS runtime.
+     */
+    private void releaseUnreachableViews() {
+        Long id;
+        while ((id = unreachableViews.poll()) != null) {
+            final View v = views.remove(id);
+            if (v != null) {
+                v.release().accept(v.ptr());
+            }
+        }
+    }
+
+    /**
+     * Accesses a lazy view with the same runtime limits as
+     * {@link #invoke(String, Object...)}, since property accesses might call
+     * getters, setters or proxy traps. The view is kept reachable until the access
+     * is completed, so its native pointer is not released while it is in use.
+     *
+     * @param view   The view accessed
+     * @param access The access of the view
+     * @return Result of the access
+     */
+    <T> T accessView(Object view, Supplier<T> access) {
+        this.runtime.scriptStarted(this);
+        try {
+            return access.get();
+        } finally {
+            this.runtime.scriptFinished();
+            Reference.reachabilityFence(view);
+        }
+    }
+
     /**
      * QuickJS contexts are equal by their native pointer
      */
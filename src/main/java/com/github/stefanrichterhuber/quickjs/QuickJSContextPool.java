@@ -0,0 +1,378 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Thread safe pool of QuickJSContexts. Since neither QuickJSRuntime nor
+ * QuickJSContext are thread safe, each pooled context has its own
+ * QuickJSRuntime. A borrowed context is exclusively owned by the borrowing
+ * thread until it is returned to the pool. By default returned contexts are
+ * discarded, so borrowers are completely isolated from each other.
+ *
+ * <pre>{@code
+ * try (QuickJSContextPool pool = new QuickJSContextPool(16)
+ *         .withTemplate(template)
+ *         .withRuntimeConfiguration(rt -> rt.withMemoryLimit(32 * 1024 * 1024))
+ *         .withBorrowTimeout(Duration.ofSeconds(1))) {
+ *     Object result = pool.execute(ctx -> ctx.eval("1 + 2"));
+ * }
+ * }</pre>
+ */
+public final class QuickJSContextPool implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Defines what happens with a context when it is returned to the pool
+     */
+    public enum ResetPolicy {
+        /**
+         * All enumerable globals added while the context was borrowed are removed.
+         * This is cheap, but changes to existing globals (e.g. objects created by the
+         * template), pending timers and lexical declarations (top-level
+         * <code>let</code>, <code>const</code> and <code>class</code>) are kept. A
+         * script declaring a top-level <code>let</code> therefore fails if it is
+         * evaluated again by the next borrower. Only suitable if the borrowers are
+         * trusted and avoid lexical declarations.
+         */
+        CLEAR_GLOBALS,
+        /**
+         * The context is closed and a new one is created when required. Provides
+         * complete isolation between borrowers. This is the default.
+         */
+        DISCARD
+    }
+
+    /**
+     * Snapshot of the metrics of a pool
+     *
+     * @param maxSize       Maximum number of contexts
+     * @param active        Number of currently borrowed contexts
+     * @param idle          Number of idle contexts in the pool
+     * @param borrowed      Total number of borrows
+     * @param created       Total number of created contexts
+     * @param discarded     Total number of discarded contexts
+     * @param timeouts      Total number of borrows failed with a timeout
+     * @param totalWaitTime Total time spent waiting for a context
+     * @param creationRate  Created contexts per second since the pool was created
+     */
+    public record Metrics(int maxSize, int active, int idle, long borrowed, long created, long discarded,
+            long timeouts, Duration totalWaitTime, double creationRate) {
+
+        /**
+         * Ratio of borrowed contexts to the maximum number of contexts
+         *
+         * @return Utilization between 0 and 1
+         */
+        public double utilization() {
+            return (double) active / maxSize;
+        }
+
+        /**
+         * Average time spent waiting for a context
+         *
+         * @return Average wait time
+         */
+        public Duration averageWaitTime() {
+            return borrowed == 0 ? Duration.ZERO : totalWaitTime.dividedBy(borrowed);
+        }
+    }
+
+    /**
+     * Pooled context with its own runtime
+     */
+    private static final class PooledContext {
+        final QuickJSRuntime runtime;
+        final QuickJSContext context;
+        /**
+         * Globals existing after initialization, which are kept on reset
+         */
+        final Set<String> baseline;
+        int uses;
+
+        PooledContext(QuickJSRuntime runtime, QuickJSContext context) {
+            this.runtime = runtime;
+            this.context = context;
+            this.baseline = context.getGlobalNames();
+        }
+
+        void close() {
+            try {
+                context.close();
+                runtime.close();
+            } catch (Exception e) {
+                LOGGER.error("Failed to close pooled context", e);
+            }
+        }
+    }
+
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<PooledContext> idle = new ConcurrentLinkedDeque<>();
+    private final Map<QuickJSContext, PooledContext> borrowed = Collections
+            .synchronizedMap(new IdentityHashMap<>());
+    private volatile boolean closed;
+
+    private volatile QuickJSContextTemplate template;
+    private volatile Consumer<QuickJSRuntime> runtimeConfiguration = runtime -> {
+    };
+    private volatile ResetPolicy resetPolicy = ResetPolicy.DISCARD;
+    private volatile int maxUses;
+    private volatile Duration borrowTimeout;
+
+    private final long startTime = System.nanoTime();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder discardedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Creates a new, empty pool. Contexts are created on demand.
+     *
+     * @param maxSize Maximum number of contexts
+     */
+    public QuickJSContextPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Initializes all new contexts from the given template
+     *
+     * @param template Template for new contexts, null for empty contexts
+     * @return this QuickJSContextPool instance for method chaining.
+     */
+    public QuickJSContextPool withTemplate(QuickJSContextTemplate template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Configures the runtime of each new context, e.g. to set memory or runtime
+     * limits.
+     *
+     * @param configuration Configuration applied to each new runtime
+     * @return this QuickJSContextPool instance for method chaining.
+     */
+    public QuickJSContextPool withRuntimeConfiguration(Consumer<QuickJSRuntime> configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("Configuration must not be null");
+        }
+        this.runtimeConfiguration = configuration;
+        return this;
+    }
+
+    /**
+     * Sets what happens with a context when it is returned to the pool. Defaults
+     * to {@link ResetPolicy#DISCARD}.
+     *
+     * @param resetPolicy Policy to apply
+     * @return this QuickJSContextPool instance for method chaining.
+     */
+    public QuickJSContextPool withResetPolicy(ResetPolicy resetPolicy) {
+        if (resetPolicy == null) {
+            throw new IllegalArgumentException("Reset policy must not be null");
+        }
+        this.resetPolicy = resetPolicy;
+        return this;
+    }
+
+    /**
+     * Discards contexts after they were borrowed the given number of times
+     *
+     * @param maxUses Maximum number of borrows per context, &lt;= 0 for unlimited
+     * @return this QuickJSContextPool instance for method chaining.
+     */
+    public QuickJSContextPool withMaxUses(int maxUses) {
+        this.maxUses = maxUses;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for a context if all contexts are borrowed.
+     * Defaults to waiting infinitely.
+     *
+     * @param borrowTimeout Maximum time to wait, null to wait infinitely
+     * @return this QuickJSContextPool instance for method chaining.
+     */
+    public QuickJSContextPool withBorrowTimeout(Duration borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+        return this;
+    }
+
+    /**
+     * Borrows a context from the pool. The context must be returned with
+     * {@link #release(QuickJSContext)} and must not be closed by the caller.
+     *
+     * @return Context exclusively owned by the caller until returned
+     * @throws InterruptedException if interrupted while waiting for a context
+     * @throws TimeoutException     if no context was available within the borrow
+     *                              timeout
+     */
+    public QuickJSContext borrow() throws InterruptedException, TimeoutException {
+        if (closed) {
+            throw new IllegalStateException("QuickJSContextPool is closed");
+        }
+        final long start = System.nanoTime();
+        final Duration timeout = this.borrowTimeout;
+        if (timeout == null) {
+            permits.acquire();
+        } else if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            timeoutCount.increment();
+            throw new TimeoutException("No QuickJSContext available within " + timeout);
+        }
+        waitNanos.add(System.nanoTime() - start);
+
+        try {
+            PooledContext entry = idle.pollFirst();
+            if (entry == null) {
+                entry = create();
+            }
+            entry.uses++;
+            borrowed.put(entry.context, entry);
+            borrowCount.increment();
+            return entry.context;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed context to the pool. Depending on the reset policy and
+     * the maximum number of uses, the context is either reset or discarded.
+     *
+     * @param context Context to return
+     */
+    public void release(QuickJSContext context) {
+        final PooledContext entry = borrowed.remove(context);
+        if (entry == null) {
+            throw new IllegalArgumentException("QuickJSContext was not borrowed from this pool");
+        }
+        try {
+            if (closed || resetPolicy == ResetPolicy.DISCARD || (maxUses > 0 && entry.uses >= maxUses)
+                    || !reset(entry)) {
+                discard(entry);
+            } else {
+                idle.offerFirst(entry);
+                // The pool might have been closed concurrently, after it removed the idle contexts
+                if (closed && idle.remove(entry)) {
+                    discard(entry);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Borrows a context, applies the given function and returns the context to
+     * the pool.
+     *
+     * @param <R>      Type of the result
+     * @param function Function to apply
+     * @return Result of the function
+     * @throws InterruptedException if interrupted while waiting for a context
+     * @throws TimeoutException     if no context was available within the borrow
+     *                              timeout
+     */
+    public <R> R execute(Function<QuickJSContext, R> function) throws InterruptedException, TimeoutException {
+        final QuickJSContext context = borrow();
+        try {
+            return function.apply(context);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the metrics of this pool
+     *
+     * @return Metrics
+     */
+    public Metrics getMetrics() {
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        final long created = createdCount.sum();
+        return new Metrics(maxSize, borrowed.size(), idle.size(), borrowCount.sum(), created,
+                discardedCount.sum(), timeoutCount.sum(), Duration.ofNanos(waitNanos.sum()),
+                seconds > 0 ? created / seconds : 0);
+    }
+
+    /**
+     * Closes all idle contexts. Borrowed contexts are closed when they are
+     * returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledContext entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+    }
+
+    /**
+     * Creates a new context with its own runtime
+     */
+    private PooledContext create() {
+        final QuickJSRuntime runtime = new QuickJSRuntime();
+        try {
+            runtimeConfiguration.accept(runtime);
+            final QuickJSContextTemplate t = this.template;
+            final QuickJSContext context = t != null ? runtime.createContext(t) : runtime.createContext();
+            createdCount.increment();
+            LOGGER.debug("Created new pooled QuickJSContext");
+            return new PooledContext(runtime, context);
+        } catch (RuntimeException e) {
+            try {
+                runtime.close();
+            } catch (Exception ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes all globals added since the context was created
+     *
+     * @return true if the context could be reset
+     */
+    private boolean reset(PooledContext entry) {
+        try {
+            for (String name : entry.context.getGlobalNames()) {
+                if (!entry.baseline.contains(name)) {
+                    entry.context.removeGlobal(name);
+                }
+            }
+            entry.context.withResultBinding(Binding.EAGER);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to reset pooled QuickJSContext, discarding it", e);
+            return false;
+        }
+    }
+
+    private void discard(PooledContext entry) {
+        entry.close();
+        discardedCount.increment();
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A QuickJSContextTemplate describes how to initialize new contexts: prelude
+ * scripts to run and globals to set. Each context created from the template is
+ * a fresh, isolated QuickJSContext with the initialized globals.
+ * <p>
+ * QuickJS can not copy the heap of an existing context, so the template
+ * replays its steps on every new context. To keep this cheap, prelude scripts
+ * are compiled only once (when the first context is created) and afterwards
+ * only their bytecode is executed. The template is thread safe and can be
+ * shared by multiple {@link QuickJSRuntime}s.
+ *
+ * <pre>{@code
+ * QuickJSContextTemplate template = new QuickJSContextTemplate()
+ *         .withScript("prelude.js", prelude)
+ *         .withInitializer(ctx -> ctx.setGlobal("version", "1.0"));
+ * try (QuickJSContext context = runtime.createContext(template)) {
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class QuickJSContextTemplate {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Prelude script, which is compiled by the first context created from the
+     * template
+     */
+    private static final class PreludeScript implements Consumer<QuickJSContext> {
+        private final String name;
+        private final String source;
+        private volatile QuickJSScript script;
+
+        PreludeScript(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        PreludeScript(QuickJSScript script) {
+            this.name = script.getName();
+            this.source = null;
+            this.script = script;
+        }
+
+        @Override
+        public void accept(QuickJSContext context) {
+            QuickJSScript s = script;
+            if (s == null) {
+                synchronized (this) {
+                    if (script == null) {
+                        script = context.compile(name, source);
+                        LOGGER.debug("Compiled prelude script {} of context template", name);
+                    }
+                    s = script;
+                }
+            }
+            s.execute(context);
+        }
+    }
+
+    /**
+     * Initialization steps in the order they were added
+     */
+    private final List<Consumer<QuickJSContext>> steps = new ArrayList<>();
+
+    /**
+     * Adds a prelude script to the template. It is compiled once and then
+     * executed in every context created from this template.
+     *
+     * @param name   Name of the script
+     * @param source Source of the script
+     * @return this QuickJSContextTemplate instance for method chaining.
+     */
+    public synchronized QuickJSContextTemplate withScript(String name, String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source must not be null");
+        }
+        steps.add(new PreludeScript(name, source));
+        return this;
+    }
+
+    /**
+     * Adds an already compiled prelude script to the template.
+     *
+     * @param script Script to execute in every context created from this template
+     * @return this QuickJSContextTemplate instance for method chaining.
+     */
+    public synchronized QuickJSContextTemplate withScript(QuickJSScript script) {
+        if (script == null) {
+            throw new IllegalArgumentException("Script must not be null");
+        }
+        steps.add(new PreludeScript(script));
+        return this;
+    }
+
+    /**
+     * Adds an initialization step to the template, e.g. to set globals with
+     * {@link QuickJSContext#setGlobal(String, String)} and its overloads. The
+     * initializer is called for every context created from this template, so it
+     * must not keep state between the calls.
+     *
+     * @param initializer Initialization step
+     * @return this QuickJSContextTemplate instance for method chaining.
+     */
+    public synchronized QuickJSContextTemplate withInitializer(Consumer<QuickJSContext> initializer) {
+        if (initializer == null) {
+            throw new IllegalArgumentException("Initializer must not be null");
+        }
+        steps.add(initializer);
+        return this;
+    }
+
+    /**
+     * Creates a new context in the given runtime and initializes it with all steps
+     * of this template.
+     *
+     * @param runtime Runtime to create the context in
+     * @return Initialized context
+     */
+    public QuickJSContext createContext(QuickJSRuntime runtime) {
+        final List<Consumer<QuickJSContext>> currentSteps;
+        synchronized (this) {
+            currentSteps = List.copyOf(steps);
+        }
+
+        final QuickJSContext context = runtime.createContext();
+        try {
+            for (Consumer<QuickJSContext> step : currentSteps) {
+                step.accept(context);
+            }
+        } catch (RuntimeException e) {
+            try {
+                context.close();
+            } catch (Exception ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+        return context;
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Timers of a QuickJSContext: provides <code>setTimeout</code>,
+ * <code>setInterval</code>, <code>clearTimeout</code>,
+ * <code>clearInterval</code> and <code>queueMicrotask</code> to JS.
+ * <p>
+ * Timers are waiting on a shared {@link ScheduledExecutorService}, so pending
+ * timers do not block any thread. When a timer is due, its callback is queued
+ * on the {@link QuickJSRuntime} and executed on the thread calling
+ * {@link QuickJSRuntime#executePendingJobs(int)} or
+ * {@link QuickJSRuntime#runEventLoop(java.time.Duration)}. Like any script,
+ * each callback is subject to the script runtime limit of the runtime.
+ *
+ * @see QuickJSContext#withEventLoop()
+ */
+final class QuickJSEventLoop implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Installs the timer functions as non-enumerable globals (like the built-in
+     * ones) and returns the function to fire a timer. The callbacks are kept in
+     * JS, Java only knows the ids of the timers.
+     */
+    private static final String PRELUDE = """
+            (function (schedule, cancel) {
+                const timers = new Map();
+                let nextId = 1;
+                const define = (name, value) => Object.defineProperty(globalThis, name,
+                    { value, writable: true, configurable: true, enumerable: false });
+                const add = (callback, delay, args, repeat) => {
+                    if (typeof callback !== 'function') {
+                        throw new TypeError('Callback must be a function');
+                    }
+                    const id = nextId++;
+                    timers.set(id, { callback, args });
+                    schedule(id, Math.max(0, Number(delay) || 0), repeat);
+                    return id;
+                };
+                const clear = id => {
+                    if (timers.delete(id)) {
+                        cancel(id);
+                    }
+                };
+                define('setTimeout', (callback, delay, ...args) => add(callback, delay, args, false));
+                define('setInterval', (callback, delay, ...args) => add(callback, delay, args, true));
+                define('clearTimeout', clear);
+                define('clearInterval', clear);
+                define('queueMicrotask', callback => {
+                    Promise.resolve().then(() => callback());
+                });
+                return (id, repeat) => {
+                    const timer = timers.get(id);
+                    if (timer === undefined) {
+                        return false;
+                    }
+                    if (!repeat) {
+                        timers.delete(id);
+                    }
+                    timer.callback(...timer.args);
+                    return true;
+                };
+            })
+            """;
+
+    /**
+     * Scheduler shared by all event loops without an explicit scheduler
+     */
+    private static final class DefaultScheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                final Thread thread = new Thread(r, "quickjs-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    private final QuickJSRuntime runtime;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * JS function firing the timer with the given id
+     */
+    private final QuickJSFunction fire;
+
+    /**
+     * Scheduled timers by id. Only accessed by the thread using the runtime.
+     */
+    private final Map<Integer, ScheduledFuture<?>> timers = new HashMap<>();
+
+    /**
+     * Creates a new event loop and installs the timer functions in the given
+     * context. This constructor is meant to be called by the QuickJSContext and
+     * therefore is not public
+     *
+     * @param context   Context to install the timers in
+     * @param runtime   Runtime of the context
+     * @param scheduler Scheduler waiting for the timers
+     */
+    QuickJSEventLoop(QuickJSContext context, QuickJSRuntime runtime, ScheduledExecutorService scheduler) {
+        this.runtime = runtime;
+        this.scheduler = scheduler;
+
+        final QuickJSFunction install = (QuickJSFunction) context.eval(PRELUDE);
+        this.fire = (QuickJSFunction) install.apply(
+                (VariadicFunction<Object>) args -> {
+                    schedule((Integer) args[0], ((Number) args[1]).longValue(), (Boolean) args[2]);
+                    return null;
+                },
+                (VariadicFunction<Object>) args -> {
+                    cancel((Integer) args[0]);
+                    return null;
+                });
+    }
+
+    /**
+     * Scheduler shared by all event loops without an explicit scheduler. It uses
+     * a single daemon thread, which only queues due timers on their runtimes.
+     *
+     * @return Default scheduler
+     */
+    static ScheduledExecutorService defaultScheduler() {
+        return DefaultScheduler.INSTANCE;
+    }
+
+    /**
+     * Number of scheduled timers
+     *
+     * @return Number of timers
+     */
+    int getTimers() {
+        return timers.size();
+    }
+
+    /**
+     * Cancels all scheduled timers
+     */
+    @Override
+    public void close() {
+        for (ScheduledFuture<?> timer : timers.values()) {
+            timer.cancel(false);
+        }
+        runtime.updatePendingCompletions(-timers.size());
+        timers.clear();
+    }
+
+    private void schedule(int id, long delay, boolean repeat) {
+        timers.put(id, scheduleFire(id, delay, repeat));
+        runtime.updatePendingCompletions(1);
+        LOGGER.trace("Scheduled timer {} with delay of {} ms", id, delay);
+    }
+
+    private void cancel(int id) {
+        final ScheduledFuture<?> timer = timers.remove(id);
+        if (timer != null) {
+            timer.cancel(false);
+            runtime.updatePendingCompletions(-1);
+        }
+    }
+
+    private ScheduledFuture<?> scheduleFire(int id, long delay, boolean repeat) {
+        return scheduler.schedule(() -> runtime.enqueueCompletion(() -> fire(id, delay, repeat)), delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Executes the callback of a due timer. Called on the thread using the
+     * runtime.
+     */
+    private void fire(int id, long delay, boolean repeat) {
+        if (!timers.containsKey(id)) {
+            // Cancelled in the meantime, e.g. by closing the context
+            return;
+        }
+        if (!repeat) {
+            timers.remove(id);
+            runtime.updatePendingCompletions(-1);
+        }
+        try {
+            fire.apply(id, repeat);
+        } catch (RuntimeException e) {
+            // Like in browsers, a failing callback does not stop the other timers
+            LOGGER.warn("Callback of timer {} failed", id, e);
+        }
+        // Intervals are rescheduled after each execution, so a busy runtime does not
+        // accumulate due executions
+        if (repeat && timers.containsKey(id)) {
+            timers.put(id, scheduleFire(id, delay, true));
+        }
+    }
+}
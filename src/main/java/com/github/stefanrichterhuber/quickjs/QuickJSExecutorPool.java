@@ -0,0 +1,414 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Executes tasks on multiple QuickJSRuntimes in parallel. Each worker is a
+ * platform thread owning its own QuickJSRuntime and QuickJSContext, which are
+ * never used by any other thread. Tasks are distributed to the worker with the
+ * fewest pending (queued or running) tasks, or, if submitted with a key, always
+ * to the same worker
+ * for the same key (e.g. to keep the state of a tenant in one context).
+ * Workers are started with the first submitted task.
+ * <p>
+ * Virtual threads should use {@link #call(Function)}: JS is executed by the
+ * platform threads of the workers, so long running native calls and Java
+ * callbacks from JS never pin the carrier thread of the virtual thread, which
+ * is just parked until the result is available.
+ *
+ * <pre>{@code
+ * try (QuickJSExecutorPool pool = new QuickJSExecutorPool(Runtime.getRuntime().availableProcessors())
+ *         .withTemplate(template)) {
+ *     CompletableFuture<Object> result = pool.submit(ctx -> ctx.eval("1 + 2"));
+ * }
+ * }</pre>
+ */
+public final class QuickJSExecutorPool implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Task queued for a worker
+     */
+    private record Task<R>(Function<QuickJSContext, R> function, CompletableFuture<R> future) {
+        void run(QuickJSContext context) {
+            if (future.isDone()) {
+                // Cancelled while queued
+                return;
+            }
+            try {
+                future.complete(function.apply(context));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of the pool
+     *
+     * @param workers   Number of workers
+     * @param queued    Number of tasks waiting for execution
+     * @param completed Total number of executed tasks
+     * @param busyTime  Total time the workers spent executing tasks
+     * @param uptime    Time since the workers were started
+     */
+    public record Metrics(int workers, int queued, long completed, Duration busyTime, Duration uptime) {
+        /**
+         * Ratio of the time the workers spent executing tasks to the total time
+         * they were available
+         *
+         * @return Utilization between 0 and 1
+         */
+        public double utilization() {
+            final long available = uptime.toNanos() * workers;
+            return available > 0 ? Math.min(1.0, (double) busyTime.toNanos() / available) : 0;
+        }
+    }
+
+    /**
+     * Worker thread owning a runtime and a context
+     */
+    private final class Worker implements Runnable {
+        final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+        /**
+         * Number of queued tasks plus the task currently running. The queue alone
+         * would make a worker busy with a long running task look idle.
+         */
+        final AtomicInteger pending = new AtomicInteger();
+        final Thread thread;
+
+        Worker(int index) {
+            this.thread = new Thread(this, "quickjs-worker-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            // Closed explicitly, as their close() methods may throw any Exception
+            QuickJSRuntime runtime = null;
+            QuickJSContext context = null;
+            try {
+                runtime = new QuickJSRuntime();
+                runtimeConfiguration.accept(runtime);
+                final QuickJSContextTemplate t = template;
+                context = t != null ? runtime.createContext(t) : runtime.createContext();
+                while (!shutdown || !queue.isEmpty()) {
+                    final Task<?> task = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        final long start = System.nanoTime();
+                        try {
+                            task.run(context);
+                        } finally {
+                            pending.decrementAndGet();
+                        }
+                        busyNanos.add(System.nanoTime() - start);
+                        completedTasks.increment();
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOGGER.debug("Worker {} interrupted", thread.getName());
+            } catch (Throwable e) {
+                LOGGER.error("Worker {} failed", thread.getName(), e);
+            } finally {
+                close(context);
+                close(runtime);
+                // Fail all tasks, which could not be executed anymore
+                Task<?> task;
+                while ((task = queue.poll()) != null) {
+                    pending.decrementAndGet();
+                    task.future().completeExceptionally(
+                            new CancellationException("QuickJSExecutorPool worker terminated"));
+                }
+            }
+        }
+
+        /**
+         * Closes the given context or runtime of this worker, if already created
+         */
+        private void close(AutoCloseable resource) {
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    LOGGER.error("Worker {} failed to close {}", thread.getName(),
+                            resource.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+
+    private final List<Worker> workers;
+    private volatile boolean started;
+    private volatile long startTime;
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private volatile boolean shutdown;
+
+    private volatile QuickJSContextTemplate template;
+    private volatile Consumer<QuickJSRuntime> runtimeConfiguration = runtime -> {
+    };
+
+    /**
+     * Creates a new pool with the given number of workers
+     *
+     * @param workers Number of workers (and therefore runtimes)
+     */
+    public QuickJSExecutorPool(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        this.workers = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            this.workers.add(new Worker(i));
+        }
+    }
+
+    /**
+     * Initializes the context of each worker from the given template. Only
+     * effective before the first task is submitted.
+     *
+     * @param template Template for the contexts
+     * @return this QuickJSExecutorPool instance for method chaining.
+     */
+    public QuickJSExecutorPool withTemplate(QuickJSContextTemplate template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Configures the runtime of each worker, e.g. to set memory or runtime limits.
+     * Only effective before the first task is submitted.
+     *
+     * @param configuration Configuration applied to each runtime
+     * @return this QuickJSExecutorPool instance for method chaining.
+     */
+    public QuickJSExecutorPool withRuntimeConfiguration(Consumer<QuickJSRuntime> configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("Configuration must not be null");
+        }
+        this.runtimeConfiguration = configuration;
+        return this;
+    }
+
+    /**
+     * Submits a task to the worker with the fewest pending tasks
+     *
+     * @param <R>      Type of the result
+     * @param function Task to execute with the context of the worker
+     * @return Future completed with the result of the task
+     */
+    public <R> CompletableFuture<R> submit(Function<QuickJSContext, R> function) {
+        Worker selected = workers.get(0);
+        for (Worker worker : workers) {
+            if (worker.pending.get() < selected.pending.get()) {
+                selected = worker;
+            }
+        }
+        return enqueue(selected, function);
+    }
+
+    /**
+     * Submits a task to the worker assigned to the given key. All tasks with equal
+     * keys are executed by the same worker, one after another in the order of
+     * submission.
+     *
+     * @param <R>      Type of the result
+     * @param key      Key selecting the worker
+     * @param function Task to execute with the context of the worker
+     * @return Future completed with the result of the task
+     */
+    public <R> CompletableFuture<R> submit(Object key, Function<QuickJSContext, R> function) {
+        final int index = Math.floorMod(key == null ? 0 : key.hashCode(), workers.size());
+        return enqueue(workers.get(index), function);
+    }
+
+    /**
+     * Executes a task on one of the workers and blocks until it is completed. This
+     * is meant to be called from virtual threads: the native JS execution happens
+     * on the platform threads of the workers, while the calling virtual thread is
+     * parked without pinning its carrier thread.
+     *
+     * @param <R>      Type of the result
+     * @param function Task to execute with the context of the worker
+     * @return Result of the task
+     * @throws InterruptedException if interrupted while waiting. The task is
+     *                              cancelled then, if not yet started.
+     */
+    public <R> R call(Function<QuickJSContext, R> function) throws InterruptedException {
+        return await(submit(function));
+    }
+
+    /**
+     * Executes a task on the worker assigned to the given key and blocks until it
+     * is completed. See {@link #call(Function)}.
+     *
+     * @param <R>      Type of the result
+     * @param key      Key selecting the worker
+     * @param function Task to execute with the context of the worker
+     * @return Result of the task
+     * @throws InterruptedException if interrupted while waiting. The task is
+     *                              cancelled then, if not yet started.
+     */
+    public <R> R call(Object key, Function<QuickJSContext, R> function) throws InterruptedException {
+        return await(submit(key, function));
+    }
+
+    /**
+     * Returns a snapshot of the metrics of this pool
+     *
+     * @return Metrics
+     */
+    public Metrics getMetrics() {
+        final long uptime = started ? System.nanoTime() - startTime : 0;
+        return new Metrics(workers.size(), getQueuedTasks(), completedTasks.sum(), Duration.ofNanos(busyNanos.sum()),
+                Duration.ofNanos(uptime));
+    }
+
+    /**
+     * Number of workers of this pool
+     *
+     * @return Number of workers
+     */
+    public int getWorkers() {
+        return workers.size();
+    }
+
+    /**
+     * Number of tasks waiting for execution
+     *
+     * @return Number of queued tasks
+     */
+    public int getQueuedTasks() {
+        int result = 0;
+        for (Worker worker : workers) {
+            result += worker.queue.size();
+        }
+        return result;
+    }
+
+    /**
+     * Stops accepting new tasks. Already submitted tasks are still executed, then
+     * the workers close their contexts and runtimes.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Waits until all workers terminated after {@link #shutdown()}
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return true if all workers terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (started) {
+            for (Worker worker : workers) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedJoin(worker.thread, remaining);
+                if (worker.thread.isAlive()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shuts the pool down and waits until all submitted tasks are executed and
+     * all runtimes are closed. If the calling thread is interrupted while
+     * waiting, its interrupt status is restored and the method returns
+     * immediately, while the workers still finish the submitted tasks.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            while (!awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Still waiting for QuickJSExecutorPool to terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the given future and unwraps exceptions thrown by the task
+     */
+    private static <R> R await(CompletableFuture<R> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private <R> CompletableFuture<R> enqueue(Worker worker, Function<QuickJSContext, R> function) {
+        if (function == null) {
+            throw new IllegalArgumentException("Function must not be null");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("QuickJSExecutorPool is shut down");
+        }
+        start();
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final Task<R> task = new Task<>(function, future);
+        worker.pending.incrementAndGet();
+        worker.queue.add(task);
+        if (!worker.thread.isAlive() && worker.queue.remove(task)) {
+            // Worker terminated concurrently or failed to initialize its runtime
+            worker.pending.decrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("QuickJSExecutorPool worker terminated"));
+        }
+        return future;
+    }
+
+    /**
+     * Starts the workers on first use
+     */
+    private void start() {
+        if (!started) {
+            synchronized (this) {
+                if (!started) {
+                    startTime = System.nanoTime();
+                    for (Worker worker : workers) {
+                        worker.thread.start();
+                    }
+                    started = true;
+                    LOGGER.debug("Started QuickJSExecutorPool with {} workers", workers.size());
+                }
+            }
+        }
+    }
+}
@@ -86,7 +86,9 @@ public final class QuickJSFunction implements VariadicFunction<Object> {
 
     /**
      * Invokes the function with the given arguments. Supports all argument types
-     * supported by QuickJSContext in general
+     * supported by QuickJSContext in general. Like
+     * {@link QuickJSContext#invoke(String, Object...)}, the call is subject to the
+     * limits of the runtime.
      * 
      * @param args Function arguments must match in number and type the arguments
      *             expected by the JS runtime
@@ -94,6 +96,16 @@ public final class QuickJSFunction implements VariadicFunction<Object> {
      */
     @Override
     public Object apply(Object... args) {
+        if (ptr == 0) {
+            throw new IllegalStateException("QuickJSFunction already closed!");
+        }
+        return ctx.call(this, args);
+    }
+
+    /**
+     * Calls the native function, without applying the limits of the runtime
+     */
+    Object call(Object[] args) {
         if (ptr != 0) {
             final Object result = this.callFunction(ptr, args);
             LOGGER.trace("Invoked QuickJSFunction with id {} -> {}", ptr, result);
@@ -0,0 +1,170 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Invocation handler for Java dynamic proxies which passes all method
+ * invocations to JS functions of the underlying scripting context. The
+ * dispatch of each method is prepared when the proxy is created: its JS name,
+ * the conversion of the result to the declared return type and, after the
+ * first call, the resolved JS function. Therefore a call only requires a single
+ * map lookup before the JS function is called.
+ *
+ * @see QuickJSContext#getInterface(String, Class)
+ */
+final class QuickJSInterfaceBinding implements InvocationHandler {
+
+    /**
+     * Dispatch of a single interface method
+     */
+    private static final class MethodBinding {
+        final String name;
+        final UnaryOperator<Object> resultConverter;
+        /**
+         * Resolved on the first call, so the proxy can be created before the
+         * functions are defined in JS
+         */
+        QuickJSFunction function;
+
+        MethodBinding(String name, UnaryOperator<Object> resultConverter) {
+            this.name = name;
+            this.resultConverter = resultConverter;
+        }
+    }
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final QuickJSContext context;
+    private final Class<?> clazz;
+    /**
+     * Bindings by method. The methods passed to the handler are the same instances
+     * for all calls, so an identity map is sufficient.
+     */
+    private final Map<Method, MethodBinding> bindings = new IdentityHashMap<>();
+
+    private QuickJSInterfaceBinding(QuickJSContext context, String namespace, Class<?> clazz) {
+        this.context = context;
+        this.clazz = clazz;
+        for (Method method : clazz.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                final String name = namespace != null ? namespace + "." + method.getName() : method.getName();
+                bindings.put(method, new MethodBinding(name, resultConverter(name, method.getReturnType())));
+            }
+        }
+    }
+
+    /**
+     * Creates a proxy of the given interface, whose abstract methods call the JS
+     * functions with the same name
+     *
+     * @param <T>       Type of the interface
+     * @param context   Context of the JS functions
+     * @param namespace Optional name space of the functions, might be null
+     * @param clazz     Interface to proxy
+     * @return Proxied instance of the interface
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T create(QuickJSContext context, String namespace, Class<T> clazz) {
+        if (!clazz.isInterface()) {
+            throw new IllegalArgumentException(clazz.getName() + " is not an interface");
+        }
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[] { clazz },
+                new QuickJSInterfaceBinding(context, namespace, clazz));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        final MethodBinding binding = bindings.get(method);
+        if (binding == null) {
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            // Methods of java.lang.Object
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "QuickJS proxy of " + clazz.getName();
+            }
+        }
+        QuickJSFunction function = binding.function;
+        if (function == null) {
+            function = context.lookupFunction(binding.name);
+            binding.function = function;
+        }
+        return binding.resultConverter.apply(function.apply(args != null ? args : NO_ARGS));
+    }
+
+    /**
+     * Converts results to the declared return type. Primitive return types
+     * require a result, since a plain proxy would throw a NullPointerException
+     * for null or undefined.
+     *
+     * @param name Name of the JS function, used in exceptions
+     * @param type Declared return type
+     */
+    private static UnaryOperator<Object> resultConverter(String name, Class<?> type) {
+        if (type == Void.TYPE || type == Void.class) {
+            return result -> null;
+        }
+        final UnaryOperator<Object> conversion = conversion(type);
+        if (!type.isPrimitive()) {
+            return conversion;
+        }
+        return result -> {
+            if (result == null) {
+                throw new IllegalStateException("JS function " + name + " returned null or undefined, but "
+                        + type.getName() + " is required");
+            }
+            return conversion.apply(result);
+        };
+    }
+
+    /**
+     * JS numbers are returned as Integer or Double, depending on their value.
+     * Converts them to the declared numeric return type (including primitives),
+     * which a plain proxy would reject with a ClassCastException. Numbers are
+     * converted to boolean like in JS, and single character strings to char.
+     */
+    private static UnaryOperator<Object> conversion(Class<?> type) {
+        if (type == Integer.TYPE || type == Integer.class) {
+            return result -> result instanceof Number n ? n.intValue() : result;
+        }
+        if (type == Long.TYPE || type == Long.class) {
+            return result -> result instanceof Number n ? n.longValue() : result;
+        }
+        if (type == Double.TYPE || type == Double.class) {
+            return result -> result instanceof Number n ? n.doubleValue() : result;
+        }
+        if (type == Float.TYPE || type == Float.class) {
+            return result -> result instanceof Number n ? n.floatValue() : result;
+        }
+        if (type == Short.TYPE || type == Short.class) {
+            return result -> result instanceof Number n ? n.shortValue() : result;
+        }
+        if (type == Byte.TYPE || type == Byte.class) {
+            return result -> result instanceof Number n ? n.byteValue() : result;
+        }
+        if (type == Boolean.TYPE || type == Boolean.class) {
+            return result -> result instanceof Number n ? n.doubleValue() != 0 && !Double.isNaN(n.doubleValue())
+                    : result;
+        }
+        if (type == Character.TYPE || type == Character.class) {
+            return result -> {
+                if (result instanceof String s && s.length() == 1) {
+                    return s.charAt(0);
+                }
+                return result instanceof Number n ? (char) n.intValue() : result;
+            };
+        }
+        return UnaryOperator.identity();
+    }
+}
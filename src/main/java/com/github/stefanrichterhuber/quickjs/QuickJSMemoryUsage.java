@@ -0,0 +1,70 @@
+package com.github.stefanrichterhuber.quickjs;
+
+/**
+ * Memory usage of a {@link QuickJSRuntime}, as computed by QuickJS. Sizes are
+ * in bytes.
+ *
+ * @param mallocSize           Bytes allocated by the runtime
+ * @param mallocLimit          Memory limit of the runtime, -1 if unlimited
+ * @param memoryUsedSize       Bytes used by the objects below, including
+ *                             allocation overhead
+ * @param mallocCount          Number of allocations
+ * @param memoryUsedCount      Number of allocations of the objects below
+ * @param atomCount            Number of atoms (interned strings, e.g. property
+ *                             names)
+ * @param atomSize             Size of the atoms
+ * @param stringCount          Number of strings
+ * @param stringSize           Size of the strings
+ * @param objectCount          Number of objects
+ * @param objectSize           Size of the objects
+ * @param propertyCount        Number of properties
+ * @param propertySize         Size of the properties
+ * @param shapeCount           Number of shapes (layouts of objects)
+ * @param shapeSize            Size of the shapes
+ * @param functionCount        Number of JS functions
+ * @param functionSize         Size of the JS functions
+ * @param functionBytecodeSize Size of the bytecode of the JS functions
+ * @param cFunctionCount       Number of native functions
+ * @param arrayCount           Number of arrays
+ * @param fastArrayCount       Number of arrays with contiguous elements
+ * @param fastArrayElements    Number of elements of these arrays
+ * @param binaryObjectCount    Number of ArrayBuffers and TypedArrays
+ * @param binaryObjectSize     Size of the ArrayBuffers
+ * @see QuickJSRuntime#getMemoryUsage()
+ */
+public record QuickJSMemoryUsage(long mallocSize, long mallocLimit, long memoryUsedSize, long mallocCount,
+        long memoryUsedCount, long atomCount, long atomSize, long stringCount, long stringSize, long objectCount,
+        long objectSize, long propertyCount, long propertySize, long shapeCount, long shapeSize, long functionCount,
+        long functionSize, long functionBytecodeSize, long cFunctionCount, long arrayCount, long fastArrayCount,
+        long fastArrayElements, long binaryObjectCount, long binaryObjectSize) {
+
+    /**
+     * Creates the memory usage from the values returned by the native library, in
+     * the order of the components
+     */
+    static QuickJSMemoryUsage of(long[] v) {
+        return new QuickJSMemoryUsage(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10], v[11],
+                v[12], v[13], v[14], v[15], v[16], v[17], v[18], v[19], v[20], v[21], v[22], v[23]);
+    }
+
+    /**
+     * Difference to an earlier memory usage, e.g. the memory allocated (or freed,
+     * if negative) by a script. The memory limit is taken from this usage.
+     *
+     * @param before Earlier memory usage
+     * @return Difference of all values
+     */
+    public QuickJSMemoryUsage minus(QuickJSMemoryUsage before) {
+        return new QuickJSMemoryUsage(mallocSize - before.mallocSize, mallocLimit,
+                memoryUsedSize - before.memoryUsedSize, mallocCount - before.mallocCount,
+                memoryUsedCount - before.memoryUsedCount, atomCount - before.atomCount, atomSize - before.atomSize,
+                stringCount - before.stringCount, stringSize - before.stringSize, objectCount - before.objectCount,
+                objectSize - before.objectSize, propertyCount - before.propertyCount,
+                propertySize - before.propertySize, shapeCount - before.shapeCount, shapeSize - before.shapeSize,
+                functionCount - before.functionCount, functionSize - before.functionSize,
+                functionBytecodeSize - before.functionBytecodeSize, cFunctionCount - before.cFunctionCount,
+                arrayCount - before.arrayCount, fastArrayCount - before.fastArrayCount,
+                fastArrayElements - before.fastArrayElements, binaryObjectCount - before.binaryObjectCount,
+                binaryObjectSize - before.binaryObjectSize);
+    }
+}
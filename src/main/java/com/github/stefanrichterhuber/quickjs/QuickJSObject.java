@@ -0,0 +1,233 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A QuickJSObject is a lazy {@link Map} view of a JS object in a
+ * QuickJSContext. Instead of copying the complete object, properties are
+ * fetched from JS on demand, and changes are written through to the JS object.
+ * Property accesses are subject to the same runtime limits as invoking a
+ * function, since they might call getters, setters or proxy traps. To avoid
+ * calling getters, {@link #put(String, Object)} and {@link #remove(Object)} do
+ * not fetch the previous value and always return null. Since the QuickJSObject
+ * represents a native resource, it is released when it is unreachable or its
+ * QuickJSContext is closed. This class is not meant to be instantiated from
+ * the Java runtime, but only from the native library, therefore its
+ * constructor is package-private.
+ *
+ * @see QuickJSContext#withResultBinding(Binding)
+ */
+public final class QuickJSObject extends AbstractMap<String, Object> {
+    /**
+     * Native pointer to js object. Read by the native library, 0 if the
+     * QuickJSContext is closed.
+     */
+    long ptr;
+
+    /**
+     * QuickJSContext this object is bound to. Read by the native library, which
+     * only unwraps the view when it is passed back to this context.
+     */
+    private final QuickJSContext ctx;
+
+    /**
+     * Clean up native references to this object
+     *
+     * @param ptr Native pointer to the js object
+     */
+    private static native void closeObject(long ptr);
+
+    private native Object getProperty(long ptr, QuickJSContext ctx, String key);
+
+    private native boolean hasProperty(long ptr, QuickJSContext ctx, String key);
+
+    private native void setProperty(long ptr, QuickJSContext ctx, String key, Object value);
+
+    private native void deleteProperty(long ptr, QuickJSContext ctx, String key);
+
+    /**
+     * Returns the own enumerable string keys of the js object
+     */
+    private native String[] getKeys(long ptr, QuickJSContext ctx);
+
+    /**
+     * Map entry, which fetches its value only on demand from the js object
+     */
+    private final class LazyEntry implements Entry<String, Object> {
+        private final String key;
+
+        LazyEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry<?, ?> e && Objects.equals(key, e.getKey())
+                    && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    /**
+     * Creates a new QuickJSObject instance. This constructor is meant to be called
+     * by the native library and therefore is not public
+     *
+     * @param ptr     Native pointer to the js object. Must not be 0.
+     * @param context QuickJSContext this object is bound to. Used for resource
+     *                management, must not be null.
+     */
+    QuickJSObject(long ptr, QuickJSContext context) {
+        if (ptr == 0) {
+            throw new IllegalArgumentException("Pointer must not be 0");
+        }
+        if (context == null) {
+            throw new IllegalArgumentException("Context must not be null");
+        }
+        this.ptr = ptr;
+        this.ctx = context;
+        // Resource management is delegated to the QuickJSContext of the object
+        context.registerView(this, ptr, QuickJSObject::closeObject);
+    }
+
+    /**
+     * Returns the native pointer to the js object. First checks if the object is
+     * still valid.
+     */
+    private long getObjectPointer() {
+        if (ptr == 0) {
+            throw new IllegalStateException("QuickJSObject already closed!");
+        }
+        return ptr;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        return ctx.accessView(this, () -> getProperty(getObjectPointer(), ctx, (String) key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        return ctx.accessView(this, () -> hasProperty(getObjectPointer(), ctx, (String) key));
+    }
+
+    /**
+     * Sets the property of the js object
+     *
+     * @return Always null, the previous value is not fetched
+     */
+    @Override
+    public Object put(String key, Object value) {
+        ctx.accessView(this, () -> {
+            setProperty(getObjectPointer(), ctx, key, value);
+            return null;
+        });
+        return null;
+    }
+
+    /**
+     * Deletes the property of the js object
+     *
+     * @return Always null, the previous value is not fetched
+     */
+    @Override
+    public Object remove(Object key) {
+        if (key instanceof String k) {
+            ctx.accessView(this, () -> {
+                deleteProperty(getObjectPointer(), ctx, k);
+                return null;
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Returns the own enumerable string keys of the js object
+     */
+    private String[] keys() {
+        return ctx.accessView(this, () -> getKeys(getObjectPointer(), ctx));
+    }
+
+    @Override
+    public int size() {
+        return keys().length;
+    }
+
+    /**
+     * Entries are backed by the js object. The keys are fetched once when the
+     * iteration starts, values are only fetched when accessed.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                final String[] keys = keys();
+                return new Iterator<Entry<String, Object>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new LazyEntry(keys[index++]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (index == 0) {
+                            throw new IllegalStateException();
+                        }
+                        QuickJSObject.this.remove(keys[index - 1]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return QuickJSObject.this.size();
+            }
+        };
+    }
+}
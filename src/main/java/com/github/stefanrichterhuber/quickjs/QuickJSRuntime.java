@@ -1,11 +1,24 @@
 package com.github.stefanrichterhuber.quickjs;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.ref.Cleaner;
 import java.lang.ref.Cleaner.Cleanable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -20,10 +33,10 @@ import io.questdb.jar.jni.JarJniLoader;
  */
 public class QuickJSRuntime implements AutoCloseable {
     /**
-     * Use the cleaner to ensure Runtime and dependent resources (like Contexts and
-     * Functions) are properly closed
+     * Use the cleaner to ensure Runtime and dependent resources (like Contexts,
+     * Functions and lazy views) are properly closed
      */
-    private static final Cleaner CLEANER = Cleaner.create();
+    static final Cleaner CLEANER = Cleaner.create();
     private final Cleanable cleanable;
     private final CleanJob cleanJob;
 
@@ -37,14 +50,16 @@ public class QuickJSRuntime implements AutoCloseable {
      */
     private static class CleanJob implements Runnable {
         private long ptr;
+        private final long interruptPtr;
         /**
          * Keep a reference to all contexts created to prevent memory leaks which
          * results in errors when closing the runtime
          */
         final Set<AutoCloseable> dependedResources = new HashSet<>();
 
-        public CleanJob(final long ptr) {
+        public CleanJob(final long ptr, final long interruptPtr) {
             this.ptr = ptr;
+            this.interruptPtr = interruptPtr;
         }
 
         @Override
@@ -58,6 +73,7 @@ public class QuickJSRuntime implements AutoCloseable {
                     }
                 }
                 closeRuntime(ptr);
+                closeInterruptHandler(interruptPtr);
                 ptr = 0;
             }
         }
@@ -99,6 +115,22 @@ public class QuickJSRuntime implements AutoCloseable {
      */
     private long ptr;
 
+    /**
+     * Pointer to the state of the native interrupt handler
+     */
+    private final long interruptPtr;
+
+    /**
+     * Settlements of JS Promises for completed Java CompletionStages, executed
+     * with the pending jobs. Filled by arbitrary threads.
+     */
+    private final BlockingDeque<Runnable> completions = new LinkedBlockingDeque<>();
+
+    /**
+     * Number of timers and CompletionStages, which will queue a completion later
+     */
+    private int pendingCompletions;
+
     /**
      * Creates a new native runtime
      * 
@@ -106,6 +138,66 @@ public class QuickJSRuntime implements AutoCloseable {
      */
     private native long createRuntime();
 
+    /**
+     * Installs the interrupt handler of the native runtime. The handler checks the
+     * deadline and interrupt requests in native code and only calls
+     * {@link #jsInterrupt()} if the script has to be interrupted.
+     * 
+     * @param ptr Pointer to the native runtime
+     * @return Pointer to the state of the interrupt handler
+     */
+    private native long createInterruptHandler(long ptr);
+
+    /**
+     * Releases the state of the interrupt handler
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     */
+    private static native void closeInterruptHandler(long interruptPtr);
+
+    /**
+     * Sets the deadline of the running script
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     * @param timeout      Nanoseconds from now, negative values remove the deadline
+     */
+    private static native void setDeadline(long interruptPtr, long timeout);
+
+    /**
+     * Requests the interrupt of the running script. Can be called from any thread.
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     * @param requested    true to interrupt the running script, false to reset the
+     *                     request
+     */
+    private static native void setInterruptRequested(long interruptPtr, boolean requested);
+
+    /**
+     * Sets the CPU time deadline of the running script. Must be called on the
+     * thread running the script, since the CPU time of this thread is measured.
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     * @param timeout      Nanoseconds of CPU time from now, negative values remove
+     *                     the deadline
+     */
+    private static native void setCpuDeadline(long interruptPtr, long timeout);
+
+    /**
+     * Number of operations executed by scripts of this runtime so far
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     * @return Number of operations
+     */
+    private static native long getOperations(long interruptPtr);
+
+    /**
+     * Sets the number of operations at which the running script is interrupted
+     * 
+     * @param interruptPtr Pointer to the state of the interrupt handler
+     * @param deadline     Number of operations, values &lt;= 0 remove the limit
+     */
+    private static native void setOperationDeadline(long interruptPtr, long deadline);
+
     /**
      * Closes the native runtime
      * 
@@ -137,6 +229,79 @@ public class QuickJSRuntime implements AutoCloseable {
      */
     private static native void setMaxStackSize(long ptr, long size);
 
+    /**
+     * Executes pending jobs of the runtime
+     * 
+     * @param ptr Pointer to the native runtime
+     * @param max Maximum number of jobs to execute, negative for all
+     * @return Number of executed jobs. Throws a QuickJSScriptException if a job
+     *         failed.
+     */
+    private static native int executePendingJobs(long ptr, int max);
+
+    /**
+     * Checks if the runtime has pending jobs
+     * 
+     * @param ptr Pointer to the native runtime
+     * @return true if there are pending jobs
+     */
+    private static native boolean isJobPending(long ptr);
+
+    /**
+     * Returns the pointer to the QuickJS runtime itself
+     * 
+     * @param ptr Pointer to the native runtime
+     * @return Pointer to the QuickJS runtime
+     */
+    private static native long getRawRuntime(long ptr);
+
+    /**
+     * Updates the stack top of the runtime to the stack of the current thread
+     * 
+     * @param rawPtr Pointer to the QuickJS runtime
+     */
+    private static native void updateStackTop(long rawPtr);
+
+    /**
+     * Computes the memory usage of the runtime
+     * 
+     * @param ptr Pointer to the native runtime
+     * @return Values in the order of the components of {@link QuickJSMemoryUsage}
+     */
+    private static native long[] getMemoryUsage(long ptr);
+
+    /**
+     * Returns the version of the bytecode created by the native library.
+     * 
+     * @return Version string
+     */
+    private static native String getBytecodeVersion();
+
+    /**
+     * Bytecode version of the native library, see {@link #bytecodeVersion()}
+     */
+    private static final String BYTECODE_VERSION = getBytecodeVersion();
+
+    /**
+     * Optional persistent cache for compiled scripts
+     */
+    private QuickJSBytecodeCache bytecodeCache;
+
+    /**
+     * Optional in-memory cache of scripts evaluated by QuickJSContext.eval()
+     */
+    private QuickJSScriptCache scriptCache;
+
+    /**
+     * Byte budget requested for the script cache
+     */
+    private long scriptCacheBudget;
+
+    /**
+     * Memory limit set by the user, -1 if unlimited
+     */
+    private long memoryLimit = -1;
+
     /**
      * Number of milliseconds a script is allowed to run. Defaults to infinite
      * runtime (scriptRuntimeLimit = -1)
@@ -144,11 +309,137 @@ public class QuickJSRuntime implements AutoCloseable {
     private long scriptRuntimeLimit = -1;
 
     /**
-     * Time in milliseconds when the script was started. This is used to ensure the
-     * script meets its runtime limits
+     * Nanoseconds of CPU time a script is allowed to consume. Defaults to infinite
+     * CPU time (scriptCpuTimeLimit = -1)
+     */
+    private long scriptCpuTimeLimit = -1;
+
+    /**
+     * Number of operations a script is allowed to execute. Defaults to an infinite
+     * number of operations (scriptOperationLimit = -1)
+     */
+    private long scriptOperationLimit = -1;
+
+    /**
+     * Pointer to the QuickJS runtime, used to update its stack top
+     */
+    private final long rawPtr;
+
+    /**
+     * Thread which used this runtime last
+     */
+    private Thread lastThread = Thread.currentThread();
+
+    /**
+     * Executor for asynchronous scripts, created on first use
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Asynchronous task currently executed by the executor. Only changed while
+     * holding {@link #interruptLock}.
+     */
+    private volatile CompletableFuture<?> runningTask;
+
+    /**
+     * Guards cancelling the running task against the executor switching to the
+     * next task, so a late cancel never interrupts an uncancelled script
+     */
+    private final Object interruptLock = new Object();
+
+    /**
+     * Number of asynchronous tasks submitted, but not yet finished. While tasks
+     * are pending, only the thread of the executor may use this runtime.
+     */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    /**
+     * Thread of the executor which executed the last asynchronous task
+     */
+    private volatile Thread executorThread;
+
+    /**
+     * Set if the running asynchronous task was cancelled. Checked by
+     * {@link #jsInterrupt()}
+     */
+    private volatile boolean interruptRequested;
+
+    /**
+     * Time in milliseconds when the script was started. Only used for logging, the
+     * runtime limits are enforced by the deadline.
      */
     private long scriptStartTime = -1;
 
+    /**
+     * Value of {@link #deadline} if the running script has no deadline
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Reference point of the deadlines
+     */
+    private final long epoch = System.nanoTime();
+
+    /**
+     * Deadline of the running script in nanoseconds since {@link #epoch}
+     */
+    private long deadline = NO_DEADLINE;
+
+    /**
+     * CPU time deadline of the running script in nanoseconds of CPU time of the
+     * current thread
+     */
+    private long cpuDeadline = NO_DEADLINE;
+
+    /**
+     * Value of the operation counter at which the running script is interrupted
+     */
+    private long operationDeadline = NO_DEADLINE;
+
+    /**
+     * If set, {@link ExecutionStats} are collected for each script
+     */
+    private boolean executionStats;
+
+    /**
+     * Time (in nanoseconds since {@link #epoch}), CPU time and operation count
+     * when the outermost running script was started. Only set if execution stats
+     * are collected.
+     */
+    private long executionStartTime;
+    private long executionStartCpuTime;
+    private long executionStartOperations;
+
+    /**
+     * If set (and execution stats are collected), the memory usage is computed
+     * before and after each script
+     */
+    private boolean memoryUsageTracking;
+
+    /**
+     * Memory usage when the outermost running script was started, if tracked
+     */
+    private QuickJSMemoryUsage executionStartMemoryUsage;
+
+    /**
+     * Statistics of the last finished script
+     */
+    private volatile ExecutionStats lastExecutionStats;
+
+    /**
+     * Number of running scripts. Scripts are nested if a Java function called
+     * from JS calls JS again.
+     */
+    private int scriptDepth;
+
+    /**
+     * Start time, deadline, CPU time deadline and operation deadline of the scripts
+     * the running script is nested in
+     */
+    private final Deque<long[]> outerScripts = new ArrayDeque<>();
+
     /**
      * This method is called by the native code to log a message.
      * 
@@ -180,12 +471,32 @@ public class QuickJSRuntime implements AutoCloseable {
         }
     }
 
+    /**
+     * Statistics of a script execution
+     *
+     * @param wallTime    Elapsed time of the execution
+     * @param cpuTime     CPU time consumed by the thread executing the script, zero
+     *                    if the JVM does not support measuring the CPU time of
+     *                    threads
+     * @param operations  Number of operations executed by the script, see
+     *                    {@link QuickJSRuntime#withScriptOperationLimit(long)}
+     * @param memoryDelta Memory allocated (or freed) by the script, null unless
+     *                    enabled with
+     *                    {@link QuickJSRuntime#withMemoryUsageTracking(boolean)}
+     * @see QuickJSRuntime#withExecutionStats(boolean)
+     */
+    public record ExecutionStats(Duration wallTime, Duration cpuTime, long operations,
+            QuickJSMemoryUsage memoryDelta) {
+    }
+
     /**
      * Creates a new QuickJSRuntime
      */
     public QuickJSRuntime() {
         ptr = createRuntime();
-        this.cleanJob = new CleanJob(ptr);
+        interruptPtr = createInterruptHandler(ptr);
+        rawPtr = getRawRuntime(ptr);
+        this.cleanJob = new CleanJob(ptr, interruptPtr);
         this.cleanable = CLEANER.register(this, this.cleanJob);
     }
 
@@ -202,39 +513,192 @@ public class QuickJSRuntime implements AutoCloseable {
     }
 
     /**
-     * This method is called by the native code regularly to check if the execution
-     * of JS has to be interrupted.
+     * This method is called by the native code if the execution of JS has to be
+     * interrupted, because the script was cancelled or its runtime limit is
+     * reached. The checks themselves are done by the native interrupt handler on
+     * each poll of QuickJS without calling Java.
      * The JS code continues to run as long as this method returns false.
-     * Currently this used to implement a timeout for scripts.
      */
     boolean jsInterrupt() {
-        if (this.scriptStartTime > 0 && scriptRuntimeLimit > 0) {
-            final boolean result = !(System.currentTimeMillis() - scriptStartTime < scriptRuntimeLimit);
-            if (result) {
-                LOGGER.debug("Script runtime limit of {} ms reached, interrupting script", scriptRuntimeLimit);
-            }
-            return result;
+        if (this.interruptRequested) {
+            LOGGER.debug("Interrupting cancelled script");
+        } else if (operationDeadline != NO_DEADLINE && getOperations(interruptPtr) >= operationDeadline) {
+            LOGGER.debug("Script operation limit of {} reached, interrupting script", scriptOperationLimit);
+        } else if (cpuDeadline != NO_DEADLINE && threadCpuTime() >= cpuDeadline) {
+            LOGGER.debug("Script CPU time limit of {} ms reached, interrupting script",
+                    () -> TimeUnit.NANOSECONDS.toMillis(scriptCpuTimeLimit));
+        } else {
+            LOGGER.debug("Script deadline reached, interrupting script");
         }
-        return false;
+        return true;
+    }
 
+    /**
+     * Callback called by QuickJSContext when a script is started
+     * 
+     * @param context Context the script is started in
+     * @param timeout Timeout of the script in addition to the script runtime
+     *                limit, might be null
+     */
+    void scriptStarted(QuickJSContext context, Duration timeout) {
+        scriptStarted(timeout);
     }
 
     /**
      * Callback called by QuickJSContext when a script is started
+     * 
+     * @param context Context the script is started in
+     */
+    void scriptStarted(QuickJSContext context) {
+        scriptStarted(context, null);
+    }
+
+    /**
+     * Callback called when a script is started
      */
     void scriptStarted() {
+        scriptStarted((Duration) null);
+    }
+
+    /**
+     * Callback called when a script is started. The deadline of the script is
+     * determined by the script runtime limit and the given timeout, its CPU time
+     * deadline by the script CPU time limit and its operation deadline by the
+     * script operation limit. A nested script never runs longer than the script it
+     * is nested in.
+     * 
+     * @param timeout Timeout of the script, might be null
+     */
+    private void scriptStarted(Duration timeout) {
+        updateStackTop();
+        final long now = System.nanoTime() - epoch;
+        long scriptDeadline = this.deadline;
+        if (scriptRuntimeLimit > 0) {
+            scriptDeadline = Math.min(scriptDeadline,
+                    deadlineAfter(now, TimeUnit.MILLISECONDS.toNanos(scriptRuntimeLimit)));
+        }
+        if (timeout != null) {
+            scriptDeadline = Math.min(scriptDeadline, deadlineAfter(now, toNanos(timeout)));
+        }
+        // Only measure what is needed by a limit or the execution stats, each value costs a call
+        final boolean collectStats = executionStats && scriptDepth == 0;
+        final long cpuNow = scriptCpuTimeLimit > 0 || collectStats ? threadCpuTime() : 0;
+        long scriptCpuDeadline = this.cpuDeadline;
+        if (scriptCpuTimeLimit > 0) {
+            scriptCpuDeadline = Math.min(scriptCpuDeadline, deadlineAfter(cpuNow, scriptCpuTimeLimit));
+        }
+        final long operations = scriptOperationLimit > 0 || collectStats ? getOperations(interruptPtr) : 0;
+        long scriptOperationDeadline = this.operationDeadline;
+        if (scriptOperationLimit > 0) {
+            scriptOperationDeadline = Math.min(scriptOperationDeadline,
+                    deadlineAfter(operations, scriptOperationLimit));
+        }
+
+        if (scriptDepth++ > 0) {
+            outerScripts.push(new long[] { scriptStartTime, deadline, cpuDeadline, operationDeadline });
+        } else if (collectStats) {
+            executionStartTime = now;
+            executionStartCpuTime = cpuNow;
+            executionStartOperations = operations;
+            executionStartMemoryUsage = memoryUsageTracking ? getMemoryUsage() : null;
+        }
         scriptStartTime = System.currentTimeMillis();
+        applyDeadline(scriptDeadline, now);
+        applyCpuDeadline(scriptCpuDeadline, cpuNow);
+        applyOperationDeadline(scriptOperationDeadline);
         LOGGER.debug("Script started at time {}", scriptStartTime);
     }
 
     /**
-     * Callback called by QuickJSContext when a script is started
+     * Callback called when a script is finished. Restores the deadlines of the
+     * script it was nested in.
      */
     void scriptFinished() {
+        if (--scriptDepth > 0) {
+            LOGGER.debug("Nested script finished at time {}. Total runtime {} ms", () -> System.currentTimeMillis(),
+                    () -> System.currentTimeMillis() - scriptStartTime);
+            final long[] outer = outerScripts.pop();
+            this.scriptStartTime = outer[0];
+            applyDeadline(outer[1], System.nanoTime() - epoch);
+            applyCpuDeadline(outer[2], outer[2] != NO_DEADLINE ? threadCpuTime() : 0);
+            applyOperationDeadline(outer[3]);
+        } else {
+            scriptDepth = 0;
+            if (executionStats) {
+                final ExecutionStats stats = new ExecutionStats(
+                        Duration.ofNanos(System.nanoTime() - epoch - executionStartTime),
+                        Duration.ofNanos(Math.max(0, threadCpuTime() - executionStartCpuTime)),
+                        getOperations(interruptPtr) - executionStartOperations,
+                        executionStartMemoryUsage != null ? getMemoryUsage().minus(executionStartMemoryUsage) : null);
+                executionStartMemoryUsage = null;
+                lastExecutionStats = stats;
+                LOGGER.debug("Script finished at time {}. Total runtime {} ms, CPU time {} ms, {} operations",
+                        () -> System.currentTimeMillis(), () -> stats.wallTime().toMillis(),
+                        () -> stats.cpuTime().toMillis(), () -> stats.operations());
+            } else {
+                LOGGER.debug("Script finished at time {}. Total runtime {} ms", () -> System.currentTimeMillis(),
+                        () -> System.currentTimeMillis() - scriptStartTime);
+            }
+            this.scriptStartTime = -1;
+            applyDeadline(NO_DEADLINE, 0);
+            applyCpuDeadline(NO_DEADLINE, 0);
+            applyOperationDeadline(NO_DEADLINE);
+        }
+    }
 
-        LOGGER.debug("Script finished at time {}. Total runtime {} ms", () -> System.currentTimeMillis(),
-                () -> System.currentTimeMillis() - scriptStartTime);
-        this.scriptStartTime = -1;
+    /**
+     * Sets the deadline of the running script and passes it to the native
+     * interrupt handler
+     */
+    private void applyDeadline(long deadline, long now) {
+        this.deadline = deadline;
+        setDeadline(interruptPtr, deadline == NO_DEADLINE ? -1 : Math.max(0, deadline - now));
+    }
+
+    /**
+     * Sets the CPU time deadline of the running script and passes it to the
+     * native interrupt handler. The native CPU clock might differ from the one
+     * of the ThreadMXBean, so only the remaining CPU time is passed.
+     */
+    private void applyCpuDeadline(long cpuDeadline, long cpuNow) {
+        if (cpuDeadline == this.cpuDeadline && cpuDeadline == NO_DEADLINE) {
+            // Nothing to do, avoids the native call if no CPU time limit is used
+            return;
+        }
+        this.cpuDeadline = cpuDeadline;
+        setCpuDeadline(interruptPtr, cpuDeadline == NO_DEADLINE ? -1 : Math.max(0, cpuDeadline - cpuNow));
+    }
+
+    /**
+     * Sets the operation deadline of the running script and passes it to the
+     * native interrupt handler
+     */
+    private void applyOperationDeadline(long operationDeadline) {
+        if (operationDeadline == this.operationDeadline) {
+            return;
+        }
+        this.operationDeadline = operationDeadline;
+        setOperationDeadline(interruptPtr, operationDeadline == NO_DEADLINE ? -1 : operationDeadline);
+    }
+
+    /**
+     * CPU time of the current thread in nanoseconds, 0 if not supported by the
+     * JVM
+     */
+    private static long threadCpuTime() {
+        return Math.max(0, THREADS.getCurrentThreadCpuTime());
+    }
+
+    private static long deadlineAfter(long now, long timeout) {
+        return timeout >= NO_DEADLINE - now ? NO_DEADLINE : now + timeout;
+    }
+
+    private static long toNanos(Duration timeout) {
+        try {
+            return timeout.toNanos();
+        } catch (ArithmeticException e) {
+            return NO_DEADLINE;
+        }
     }
 
     /**
@@ -250,6 +714,114 @@ public class QuickJSRuntime implements AutoCloseable {
         return this;
     }
 
+    /**
+     * Sets the CPU time a script is allowed to consume. Unlike the script runtime
+     * limit, time the thread is not scheduled (e.g. on a busy machine) does not
+     * count against this limit. Both limits can be combined. Negative values allow
+     * for infinite CPU time. The CPU time is measured with the
+     * {@link java.lang.management.ThreadMXBean} of the JVM; if its CPU time
+     * measurement is disabled, the first call enables it for the whole JVM
+     * ({@link java.lang.management.ThreadMXBean#setThreadCpuTimeEnabled(boolean)}).
+     * 
+     * @param limit Limit to set
+     * @param unit  Time Unit of the limit
+     * @return this QuickJSRuntime instance for method chaining.
+     * @throws UnsupportedOperationException if the JVM does not support measuring
+     *                                       the CPU time of threads
+     */
+    public QuickJSRuntime withScriptCpuTimeLimit(long limit, TimeUnit unit) {
+        if (limit > 0 && !THREADS.isCurrentThreadCpuTimeSupported()) {
+            throw new UnsupportedOperationException("CPU time of threads can not be measured by this JVM");
+        }
+        if (limit > 0 && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        scriptCpuTimeLimit = limit > 0 ? unit.toNanos(limit) : -1;
+        return this;
+    }
+
+    /**
+     * Sets the number of operations a script is allowed to execute. Unlike time
+     * limits, this limit is deterministic: a script is always interrupted at the
+     * same point, regardless of the load of the machine. Operations are counted
+     * each time QuickJS polls for interrupts, which happens after a fixed number of
+     * (roughly ten thousand) loop iterations, jumps and function calls. Therefore
+     * short scripts might not count any operation at all. Negative values allow for
+     * an infinite number of operations.
+     * 
+     * @param limit Number of operations
+     * @return this QuickJSRuntime instance for method chaining.
+     * @see ExecutionStats#operations()
+     */
+    public QuickJSRuntime withScriptOperationLimit(long limit) {
+        scriptOperationLimit = limit > 0 ? limit : -1;
+        return this;
+    }
+
+    /**
+     * Computes the current memory usage of this runtime. QuickJS visits all
+     * objects of the runtime to compute it, so the effort grows with the size of
+     * the heap.
+     * 
+     * @return Memory usage
+     */
+    public QuickJSMemoryUsage getMemoryUsage() {
+        return QuickJSMemoryUsage.of(getMemoryUsage(getRuntimePointer()));
+    }
+
+    /**
+     * Enables or disables collecting {@link ExecutionStats} of each script, see
+     * {@link #getLastExecutionStats()}. Collecting the stats measures the CPU
+     * time and reads the operation counter before and after each script, so it
+     * is disabled by default. Like {@link #withScriptCpuTimeLimit(long, TimeUnit)}
+     * enabling the stats enables the CPU time measurement of the JVM-wide
+     * {@link java.lang.management.ThreadMXBean}, if supported.
+     * 
+     * @param enabled true to enable collecting the stats
+     * @return this QuickJSRuntime instance for method chaining.
+     */
+    public QuickJSRuntime withExecutionStats(boolean enabled) {
+        if (enabled && THREADS.isCurrentThreadCpuTimeSupported() && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        this.executionStats = enabled;
+        if (!enabled) {
+            this.lastExecutionStats = null;
+        }
+        return this;
+    }
+
+    /**
+     * Enables or disables tracking of the memory allocated by each script. Only
+     * effective if execution stats are enabled with
+     * {@link #withExecutionStats(boolean)}. If
+     * enabled, {@link ExecutionStats#memoryDelta()} reports the difference of the
+     * memory usage before and after the script. QuickJS has no cheap counter of
+     * allocations, so this computes the full memory usage twice per call (see
+     * {@link #getMemoryUsage()}). Objects freed by the garbage collector during
+     * the script might lead to negative values.
+     * 
+     * @param enabled true to enable tracking
+     * @return this QuickJSRuntime instance for method chaining.
+     */
+    public QuickJSRuntime withMemoryUsageTracking(boolean enabled) {
+        this.memoryUsageTracking = enabled;
+        return this;
+    }
+
+    /**
+     * Statistics of the last finished script, including scripts executed by
+     * {@link #executePendingJobs(int)}. Nested scripts are included in the
+     * statistics of the script they are nested in.
+     * 
+     * @return Statistics of the last script, null if no script was executed yet
+     *         or execution stats are disabled
+     * @see #withExecutionStats(boolean)
+     */
+    public ExecutionStats getLastExecutionStats() {
+        return lastExecutionStats;
+    }
+
     /**
      * Sets the memory limit of javascript execution to the given number of bytes
      * 
@@ -257,10 +829,109 @@ public class QuickJSRuntime implements AutoCloseable {
      * @return this QuickJSRuntime instance for method chaining.
      */
     public QuickJSRuntime withMemoryLimit(long limit) {
-        setMemoryLimit(getRuntimePointer(), limit);
+        this.memoryLimit = limit;
+        if (scriptCache != null) {
+            scriptCache.withByteBudget(effectiveScriptCacheBudget());
+        }
+        applyMemoryLimit();
+        return this;
+    }
+
+    /**
+     * Enables an in-memory LRU cache for scripts evaluated with
+     * {@link QuickJSContext#eval(String)}. Repeatedly evaluated scripts are then
+     * only compiled once. The cached scripts are accounted against the memory
+     * limit of this runtime: JS can only use the memory limit minus the size of
+     * the cache, and the cache is limited to half of the memory limit.
+     * 
+     * @param byteBudget Maximum size of the cache in bytes. Values &lt;= 0
+     *                   disable the cache.
+     * @return this QuickJSRuntime instance for method chaining.
+     */
+    public QuickJSRuntime withScriptCache(long byteBudget) {
+        this.scriptCacheBudget = byteBudget;
+        if (byteBudget <= 0) {
+            this.scriptCache = null;
+        } else if (scriptCache == null) {
+            this.scriptCache = new QuickJSScriptCache(effectiveScriptCacheBudget());
+        } else {
+            this.scriptCache.withByteBudget(effectiveScriptCacheBudget());
+        }
+        applyMemoryLimit();
         return this;
     }
 
+    /**
+     * Returns the in-memory script cache of this runtime, e.g. to inspect its
+     * statistics
+     * 
+     * @return Script cache or null if not enabled
+     */
+    public QuickJSScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * QuickJS detects stack overflows relative to the stack of the thread which
+     * used the runtime before. Therefore the stack top has to be updated before
+     * the runtime is used from another thread (e.g. after an asynchronous script
+     * was executed by the executor). Must be called before any native call that
+     * might execute or parse JS.
+     * 
+     * @throws IllegalStateException if called by another thread than the executor
+     *                               while asynchronous scripts are pending
+     */
+    void updateStackTop() {
+        final Thread current = Thread.currentThread();
+        if (pendingTasks.get() > 0 && current != executorThread) {
+            throw new IllegalStateException(
+                    "QuickJSRuntime can not be used by other threads while asynchronous scripts are pending");
+        }
+        if (current != this.lastThread) {
+            updateStackTop(rawPtr);
+            this.lastThread = current;
+        }
+    }
+
+    /**
+     * Returns the compiled script for the given source from the script cache
+     * 
+     * @param context Context to compile the script in if it is not cached
+     * @param source  Source of the script
+     * @return Compiled script or null if the script cache is disabled
+     */
+    QuickJSScript cachedScript(QuickJSContext context, String source) {
+        if (scriptCache == null) {
+            return null;
+        }
+        // Scripts not in the cache are compiled right away
+        updateStackTop();
+        final long size = scriptCache.getSize();
+        final QuickJSScript script = scriptCache.get(context, source);
+        if (size != scriptCache.getSize()) {
+            applyMemoryLimit();
+        }
+        return script;
+    }
+
+    /**
+     * Byte budget of the script cache, limited to half of the memory limit
+     */
+    private long effectiveScriptCacheBudget() {
+        return memoryLimit > 0 ? Math.max(1, Math.min(scriptCacheBudget, memoryLimit / 2)) : scriptCacheBudget;
+    }
+
+    /**
+     * Sets the native memory limit to the memory limit minus the size of the
+     * script cache
+     */
+    private void applyMemoryLimit() {
+        if (memoryLimit > 0) {
+            final long cached = scriptCache != null ? scriptCache.getSize() : 0;
+            setMemoryLimit(getRuntimePointer(), memoryLimit - cached);
+        }
+    }
+
     /**
      * Sets the maximum stack of javascript execution to the given number of bytes
      * 
@@ -272,8 +943,251 @@ public class QuickJSRuntime implements AutoCloseable {
         return this;
     }
 
+    /**
+     * Executes pending jobs, like reactions of settled Promises, of all contexts
+     * of this runtime. Promises returned to Java as
+     * {@link java.util.concurrent.CompletableFuture} are only completed while
+     * pending jobs are executed. Likewise, Promises created for
+     * {@link java.util.concurrent.CompletionStage}s returned by Java functions are
+     * settled here after the stage completed. Jobs scheduled by executed jobs are
+     * executed as well.
+     * 
+     * @param max Maximum number of jobs to execute. Negative values execute jobs
+     *            until no job is pending anymore.
+     * @return Number of executed jobs
+     * @throws QuickJSScriptException if a job failed, e.g. because it was
+     *                                interrupted by the script runtime limit. The
+     *                                remaining jobs stay pending.
+     */
+    public int executePendingJobs(int max) {
+        int executed = 0;
+        boolean progress = true;
+        while (progress && (max < 0 || executed < max)) {
+            progress = false;
+            Runnable completion;
+            while ((max < 0 || executed < max) && (completion = completions.poll()) != null) {
+                // Each completion (e.g. a timer callback) is a new task with its own runtime limit
+                scriptStarted();
+                try {
+                    completion.run();
+                } finally {
+                    scriptFinished();
+                }
+                executed++;
+                progress = true;
+            }
+            if (max < 0 || executed < max) {
+                final int jobs;
+                scriptStarted();
+                try {
+                    jobs = executePendingJobs(getRuntimePointer(), max < 0 ? -1 : max - executed);
+                } finally {
+                    scriptFinished();
+                }
+                executed += jobs;
+                progress |= jobs > 0;
+            }
+        }
+        return executed;
+    }
+
+    /**
+     * Executes pending jobs until no job is pending anymore
+     * 
+     * @return Number of executed jobs
+     * @see #executePendingJobs(int)
+     */
+    public int executePendingJobs() {
+        return executePendingJobs(-1);
+    }
+
+    /**
+     * Checks if there are pending jobs to execute with
+     * {@link #executePendingJobs(int)}
+     * 
+     * @return true if there are pending jobs
+     */
+    public boolean isJobPending() {
+        return !completions.isEmpty() || isJobPending(getRuntimePointer());
+    }
+
+    /**
+     * Runs the event loop of this runtime: executes pending jobs and waits for
+     * timers (see {@link QuickJSContext#withEventLoop()}) and Java
+     * CompletionStages passed to JS, until nothing is pending anymore or the
+     * timeout elapsed.
+     * 
+     * @param timeout Maximum time to run the event loop
+     * @return true if nothing is pending anymore, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean runEventLoop(Duration timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            executePendingJobs();
+            if (pendingCompletions <= 0 && !isJobPending()) {
+                return true;
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            final Runnable completion = completions.pollFirst(remaining, TimeUnit.NANOSECONDS);
+            if (completion != null) {
+                completions.offerFirst(completion);
+            }
+        }
+    }
+
+    /**
+     * Queues a completion, like the settlement of a JS Promise or a due timer, for
+     * the next call of {@link #executePendingJobs(int)}. Can be called from any
+     * thread.
+     * 
+     * @param completion Completion to execute
+     */
+    void enqueueCompletion(Runnable completion) {
+        completions.add(completion);
+    }
+
+    /**
+     * Tracks the number of timers and CompletionStages, which will queue a
+     * completion later. Only called by the thread using the runtime.
+     * 
+     * @param delta Change of the number
+     */
+    void updatePendingCompletions(int delta) {
+        pendingCompletions += delta;
+    }
+
+    /**
+     * Uses the given persistent cache for all scripts compiled with
+     * {@link QuickJSContext#compile(String, String)} within this runtime. The same
+     * cache can be shared by multiple runtimes.
+     * 
+     * @param cache Cache to use, null to disable caching
+     * @return this QuickJSRuntime instance for method chaining.
+     */
+    public QuickJSRuntime withBytecodeCache(QuickJSBytecodeCache cache) {
+        this.bytecodeCache = cache;
+        return this;
+    }
+
+    /**
+     * Returns the persistent bytecode cache of this runtime
+     * 
+     * @return Cache or null if not configured
+     */
+    QuickJSBytecodeCache getBytecodeCache() {
+        return bytecodeCache;
+    }
+
+    /**
+     * Returns the version of the bytecode created by the native library. Bytecode
+     * is only compatible with the exact same version.
+     * 
+     * @return Version string
+     */
+    static String bytecodeVersion() {
+        return BYTECODE_VERSION;
+    }
+
+    /**
+     * Executes the given task asynchronously on the executor of this runtime. All
+     * tasks are executed one after another by the same thread. Cancelling the
+     * returned future interrupts the script if it is already running. Until all
+     * submitted tasks are finished, scripts of this runtime can only be executed
+     * by the executor.
+     * 
+     * @param <T>  Type of the result
+     * @param task Task to execute
+     * @return Future completed with the result of the task
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                final boolean result = super.cancel(mayInterruptIfRunning);
+                if (result) {
+                    synchronized (interruptLock) {
+                        if (runningTask == this) {
+                            interruptRequested = true;
+                            setInterruptRequested(interruptPtr, true);
+                        }
+                    }
+                }
+                return result;
+            }
+        };
+        pendingTasks.incrementAndGet();
+        try {
+            executor().execute(() -> {
+                executorThread = Thread.currentThread();
+                synchronized (interruptLock) {
+                    interruptRequested = false;
+                    setInterruptRequested(interruptPtr, false);
+                    runningTask = future;
+                }
+                T result = null;
+                Throwable failure = null;
+                try {
+                    if (!future.isDone()) {
+                        result = task.get();
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    synchronized (interruptLock) {
+                        runningTask = null;
+                        interruptRequested = false;
+                        setInterruptRequested(interruptPtr, false);
+                    }
+                    // Released before the future is completed, so the caller can use the runtime right after waiting for it
+                    pendingTasks.decrementAndGet();
+                }
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingTasks.decrementAndGet();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Returns the executor for asynchronous scripts. Its single thread terminates
+     * when idle, so an unused runtime does not keep a thread alive.
+     */
+    private synchronized Executor executor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(r, "quickjs-runtime-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
     @Override
     public void close() throws Exception {
+        final ThreadPoolExecutor e;
+        synchronized (this) {
+            e = this.executor;
+        }
+        if (e != null) {
+            // Pending asynchronous scripts are executed before the runtime is closed
+            e.shutdown();
+            if (!e.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Asynchronous scripts still running while closing runtime");
+            }
+        }
         cleanable.clean();
     }
 
@@ -289,6 +1203,17 @@ public class QuickJSRuntime implements AutoCloseable {
         return result;
     }
 
+    /**
+     * Creates a new independent QuickJS context and initializes it from the given
+     * template
+     * 
+     * @param template Template to initialize the context with
+     * @return QuickJSContext
+     */
+    public QuickJSContext createContext(QuickJSContextTemplate template) {
+        return template.createContext(this);
+    }
+
     /**
      * QuickJSRuntimes are equal by their native pointer
      */
@@ -0,0 +1,69 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.Objects;
+
+/**
+ * A QuickJSScript is a script precompiled to QuickJS bytecode by
+ * {@link QuickJSContext#compile(String, String)}. Executing a compiled script
+ * skips parsing and compiling the source, so it is considerably faster than
+ * {@link QuickJSContext#eval(String)} for scripts executed repeatedly. The
+ * bytecode does not depend on the context it was compiled in, so the script can
+ * be executed in any context. It is, however, bound to the QuickJS version of
+ * the native library.
+ */
+public final class QuickJSScript {
+    /**
+     * Name of the script, used as file name in exceptions
+     */
+    private final String name;
+
+    /**
+     * QuickJS bytecode of the script
+     */
+    private final byte[] bytecode;
+
+    /**
+     * Creates a new QuickJSScript from already compiled bytecode
+     * 
+     * @param name     Name of the script
+     * @param bytecode Compiled QuickJS bytecode, must not be null
+     */
+    QuickJSScript(String name, byte[] bytecode) {
+        this.name = name;
+        this.bytecode = Objects.requireNonNull(bytecode, "Bytecode must not be null");
+    }
+
+    /**
+     * Executes the script in the given context and returns its result.
+     * 
+     * @param context Context to execute the script in
+     * @return Result from the script. Will be either null, or of one of the
+     *         supported java types
+     */
+    public Object execute(QuickJSContext context) {
+        return context.execute(this);
+    }
+
+    /**
+     * Name of the script
+     * 
+     * @return Name of the script
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * QuickJS bytecode of the script. Do not modify!
+     * 
+     * @return bytecode
+     */
+    byte[] getBytecode() {
+        return bytecode;
+    }
+
+    @Override
+    public String toString() {
+        return "QuickJSScript " + name + " with " + bytecode.length + " bytes of bytecode";
+    }
+}
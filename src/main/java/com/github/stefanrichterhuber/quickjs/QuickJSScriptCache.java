@@ -0,0 +1,179 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory LRU cache of compiled scripts used by
+ * {@link QuickJSContext#eval(String)}. Scripts evaluated repeatedly are only
+ * parsed and compiled once, later evaluations execute the cached bytecode. The
+ * size of the cache is bounded by a byte budget, covering both the source and
+ * the bytecode of each entry. If the budget is exceeded, the least recently
+ * used scripts are evicted. Like its {@link QuickJSRuntime}, the cache is not
+ * thread safe.
+ *
+ * @see QuickJSRuntime#withScriptCache(long)
+ */
+public final class QuickJSScriptCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Name of cached scripts. Equals the name used by the native eval, so
+     * exceptions look the same with and without cache.
+     */
+    static final String SCRIPT_NAME = "eval_script";
+
+    /**
+     * Cached scripts by source, in access order
+     */
+    private final LinkedHashMap<String, QuickJSScript> scripts = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Maximum size of all entries in bytes
+     */
+    private long byteBudget;
+
+    /**
+     * Current size of all entries in bytes
+     */
+    private long size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new QuickJSScriptCache. This constructor is meant to be called by
+     * the QuickJSRuntime and therefore is not public
+     *
+     * @param byteBudget Maximum size of all entries in bytes
+     */
+    QuickJSScriptCache(long byteBudget) {
+        withByteBudget(byteBudget);
+    }
+
+    /**
+     * Changes the maximum size of the cache. Evicts entries if necessary.
+     *
+     * @param byteBudget Maximum size of all entries in bytes
+     */
+    void withByteBudget(long byteBudget) {
+        if (byteBudget <= 0) {
+            throw new IllegalArgumentException("Byte budget must be positive");
+        }
+        this.byteBudget = byteBudget;
+        evict();
+    }
+
+    /**
+     * Returns the cached script for the given source, or compiles and caches it in
+     * the given context.
+     *
+     * @param context Context to compile the script in if it is not cached
+     * @param source  Source of the script
+     * @return Compiled script
+     */
+    QuickJSScript get(QuickJSContext context, String source) {
+        QuickJSScript script = scripts.get(source);
+        if (script != null) {
+            hits++;
+            return script;
+        }
+        misses++;
+        script = context.compileUncached(SCRIPT_NAME, source);
+
+        final long entrySize = sizeOf(source, script);
+        if (entrySize <= byteBudget) {
+            scripts.put(source, script);
+            size += entrySize;
+            evict();
+        }
+        return script;
+    }
+
+    /**
+     * Removes all scripts from the cache
+     */
+    public void clear() {
+        scripts.clear();
+        size = 0;
+    }
+
+    /**
+     * Number of evaluations served from the cache
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of evaluations which had to compile the script
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of scripts evicted from the cache to meet its byte budget
+     *
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Current size of all cached scripts
+     *
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Maximum size of all cached scripts
+     *
+     * @return Byte budget
+     */
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * Number of cached scripts
+     *
+     * @return Number of entries
+     */
+    public int getEntries() {
+        return scripts.size();
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits into its budget
+     */
+    private void evict() {
+        final var iterator = scripts.entrySet().iterator();
+        while (size > byteBudget && iterator.hasNext()) {
+            final Map.Entry<String, QuickJSScript> eldest = iterator.next();
+            size -= sizeOf(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+        LOGGER.trace("Script cache contains {} scripts with {} bytes", scripts.size(), size);
+    }
+
+    /**
+     * Estimated size of an entry: UTF-16 source and bytecode
+     */
+    private static long sizeOf(String source, QuickJSScript script) {
+        return 2L * source.length() + script.getBytecode().length;
+    }
+}
@@ -2,9 +2,11 @@ package com.github.stefanrichterhuber.quickjs;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -57,6 +59,13 @@ public final class QuickJSUtils {
             return true;
         if (VariadicFunction.class.isAssignableFrom(clazz))
             return true;
+        if (clazz == byte[].class || clazz == int[].class || clazz == long[].class || clazz == float[].class
+                || clazz == double[].class)
+            return true;
+        if (ByteBuffer.class.isAssignableFrom(clazz))
+            return true;
+        if (CompletionStage.class.isAssignableFrom(clazz))
+            return true;
 
         return false;
     }
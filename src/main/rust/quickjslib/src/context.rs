@@ -1,8 +1,10 @@
 use crate::java_js_proxy::ProxiedJavaValue;
+use crate::jni_registry::JniRegistry;
 use crate::js_java_proxy::JSJavaProxy;
 use crate::runtime::{ptr_to_runtime, runtime_to_ptr};
-use crate::{foreign_function, with_locale};
-use jni::objects::{JObjectArray, JThrowable};
+use crate::shared_buffer;
+use crate::{foreign_function, promise, script, with_locale};
+use jni::objects::{JByteArray, JObjectArray, JThrowable};
 use jni::{
     objects::{JObject, JString},
     sys::jlong,
@@ -11,7 +13,7 @@ use jni::{
 use log::trace;
 use log::{debug, warn};
 use rquickjs::atom::PredefinedAtom;
-use rquickjs::{Context, Error, Value};
+use rquickjs::{Context, Ctx, Error, Function, IntoJs, Value};
 
 // ---------------------- com.github.stefanrichterhuber.quickjs.QuickJSContext
 /// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.createContext(long ptr)
@@ -89,6 +91,131 @@ pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext
     result
 }
 
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.removeGlobal(long, String)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_removeGlobal<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+    key: JString<'a>,
+) {
+    let context = ptr_to_context(context_ptr);
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+
+    context.with(|ctx| {
+        let globals = ctx.globals();
+        if globals.remove(key_string.as_str()).is_err() {
+            // Globals declared with var or function are not configurable and can not be deleted, so they are just reset to undefined
+            let _ = ctx.catch();
+            if let Err(e) = globals.set(key_string.as_str(), rquickjs::Undefined) {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+            }
+        }
+    });
+
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.getGlobalNames(long)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_getGlobalNames<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+) -> JObjectArray<'a> {
+    let context = ptr_to_context(context_ptr);
+
+    let result = context.with(|ctx| {
+        let keys: Result<Vec<String>, _> = ctx.globals().keys::<String>().collect();
+        match keys {
+            Ok(keys) => {
+                let string_class = JniRegistry::class(&JniRegistry::get(&mut _env).string);
+                let array = _env
+                    .new_object_array(keys.len() as i32, string_class, JObject::null())
+                    .unwrap();
+                for (i, key) in keys.iter().enumerate() {
+                    let key = _env.new_string(key).unwrap();
+                    _env.set_object_array_element(&array, i as i32, &key)
+                        .unwrap();
+                    _env.delete_local_ref(key).unwrap();
+                }
+                array
+            }
+            Err(e) => {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+                JObjectArray::from(JObject::null())
+            }
+        }
+    });
+
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.settlePromise(long, long, Object, Throwable)
+/// Settles a JS Promise created for a Java CompletionStage: it is rejected if an error is given, otherwise resolved with the value.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_settlePromise<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+    promise_ptr: jlong,
+    value: JObject<'a>,
+    error: JThrowable<'a>,
+) {
+    let context = ptr_to_context(context_ptr);
+    let pending = promise::ptr_to_pending_promise(promise_ptr);
+
+    context.with(|ctx| {
+        let result = if error.is_null() {
+            trace!("Resolve JS Promise of java.util.concurrent.CompletionStage");
+            let value = ProxiedJavaValue::from_object(&mut _env, &_obj, value);
+            // The resolving functions belong to this context, so only the lifetime has to be adapted
+            let resolve: rquickjs::Function = unsafe { std::mem::transmute(pending.resolve.clone()) };
+            resolve.call::<_, ()>((value,))
+        } else {
+            trace!("Reject JS Promise of java.util.concurrent.CompletionStage");
+            // Reuse the mapping of Java exceptions to JS errors, which throws the error
+            let _ = ProxiedJavaValue::from_throwable(&mut _env, error).into_js(&ctx);
+            let reason = ctx.catch();
+            let reject: rquickjs::Function = unsafe { std::mem::transmute(pending.reject.clone()) };
+            reject.call::<_, ()>((reason,))
+        };
+        if let Err(e) = result {
+            handle_exception(e, &ctx, &_obj, &mut _env);
+        }
+    });
+    drop(pending);
+
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.releasePromise(long)
+/// Releases the resolving functions of a JS Promise, whose Java CompletionStage was not completed before the context is closed.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_releasePromise<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    promise_ptr: jlong,
+) {
+    trace!("Released pending JS Promise with id {}", promise_ptr);
+    let pending = promise::ptr_to_pending_promise(promise_ptr);
+    drop(pending);
+}
+
 /// Handle JS errors. Extracts the message and throws a Java exception..
 pub(crate) fn handle_exception<'vm>(
     e: Error,
@@ -260,6 +387,85 @@ pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext
     _ = context_to_ptr(context);
 }
 
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.setLazyGlobal(long, String, Map)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_setLazyGlobal<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+    key: JString<'a>,
+    value: JObject<'a>,
+) {
+    let context = ptr_to_context(context_ptr);
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+    let value = ProxiedJavaValue::from_lazy_map(&mut _env, &_obj, value);
+
+    context.with(|ctx| {
+        let globals = ctx.globals();
+        let s = globals.set(&key_string, value);
+
+        match s {
+            Ok(_) => {}
+            Err(e) => {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+            }
+        }
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.detachArrayBuffer(long, String)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_detachArrayBuffer<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+    key: JString<'a>,
+) {
+    let context = ptr_to_context(context_ptr);
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+
+    context.with(|ctx| {
+        let globals = ctx.globals();
+        let s: Result<Value, _> = globals.get(&key_string);
+
+        match s {
+            Ok(value) => {
+                let is_array_buffer = value
+                    .as_object()
+                    .map(|obj| obj.as_array_buffer().is_some())
+                    .unwrap_or(false);
+                if is_array_buffer {
+                    trace!("Detaching JS ArrayBuffer {}", key_string);
+                    shared_buffer::detach_array_buffer(&ctx, &value);
+                } else {
+                    _env.throw_new(
+                        "java/lang/IllegalArgumentException",
+                        format!("{} is not an ArrayBuffer", key_string),
+                    )
+                    .unwrap();
+                }
+            }
+            Err(e) => {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+            }
+        }
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+}
+
 /// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.eval(long, String)
 #[no_mangle]
 pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_eval<'a>(
@@ -291,81 +497,214 @@ pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext
     r
 }
 
-/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.invoke(long, String, Object... args)
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.compile(long, String, String)
 #[no_mangle]
-pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_invoke<'a>(
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_compile<'a>(
     mut _env: JNIEnv<'a>,
-    obj: JObject<'a>,
+    _obj: JObject<'a>,
     context_ptr: jlong,
     name: JString<'a>,
-    args: JObjectArray<'a>,
-) -> JObject<'a> {
+    source: JString<'a>,
+) -> JByteArray<'a> {
     let context = ptr_to_context(context_ptr);
-    let function_name: String = _env
+    let name_string: String = _env
         .get_string(&name)
         .expect("Couldn't get java string!")
         .into();
+    let source_string: String = _env
+        .get_string(&source)
+        .expect("Couldn't get java string!")
+        .into();
+    let locale = with_locale::TemporaryLocale::new_default();
 
     let r = context.with(move |ctx| {
-        let globals = ctx.globals();
-        let f: Result<rquickjs::Value, _> = if function_name.contains('.') {
-            let parts = function_name.split('.').collect::<Vec<&str>>();
-
-            let mut target = globals;
-            let function_name = parts.last().unwrap();
-            for part in parts.iter().take(parts.len() - 1) {
-                let s: Result<Value, _> = target.get(*part);
-                target = match s {
-                    Ok(s) => {
-                        if s.is_object() {
-                            s.into_object().unwrap()
-                        } else {
-                            _env.throw_new(
-                                "java/lang/Exception",
-                                format!("{} is not an object", part),
-                            )
+        let s = locale.with(|| script::compile(&ctx, &name_string, &source_string));
+
+        match s {
+            Ok(bytecode) => _env.byte_array_from_slice(&bytecode).unwrap(),
+            Err(e) => {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+                JByteArray::from(JObject::null())
+            }
+        }
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+    r
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.execute(long, byte[])
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_execute<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    context_ptr: jlong,
+    bytecode: JByteArray<'a>,
+) -> JObject<'a> {
+    let context = ptr_to_context(context_ptr);
+    let bytecode = _env
+        .convert_byte_array(&bytecode)
+        .expect("Couldn't get bytecode!");
+    let locale = with_locale::TemporaryLocale::new_default();
+
+    let r = context.with(move |ctx| {
+        let s = locale.with(|| script::execute(&ctx, &bytecode));
+
+        match s {
+            Ok(s) => JSJavaProxy::new(s).into_jobject(&_obj, &mut _env).unwrap(),
+            Err(e) => {
+                handle_exception(e, &ctx, &_obj, &mut _env);
+                JObject::null()
+            }
+        }
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+    r
+}
+
+/// Resolves a JS function by its name. Names containing dots are resolved as path of nested objects starting at the globals (e.g. `namespace.function`).
+/// If there is no function with the given name, a Java exception is thrown and None is returned.
+fn lookup_function<'js, 'a>(
+    ctx: &Ctx<'js>,
+    function_name: &str,
+    obj: &JObject<'a>,
+    env: &mut JNIEnv<'a>,
+) -> Option<Function<'js>> {
+    let globals = ctx.globals();
+    let f: Result<rquickjs::Value, _> = if function_name.contains('.') {
+        let parts = function_name.split('.').collect::<Vec<&str>>();
+
+        let mut target = globals;
+        let function_name = parts.last().unwrap();
+        for part in parts.iter().take(parts.len() - 1) {
+            let s: Result<Value, _> = target.get(*part);
+            target = match s {
+                Ok(s) => {
+                    if s.is_object() {
+                        s.into_object().unwrap()
+                    } else {
+                        env.throw_new("java/lang/Exception", format!("{} is not an object", part))
                             .unwrap();
-                            return JObject::null();
-                        }
-                    }
-                    Err(e) => {
-                        handle_exception(e, &ctx, &obj, &mut _env);
-                        return JObject::null();
+                        return None;
                     }
                 }
-            }
-            target.get(*function_name)
-        } else {
-            globals.get(&function_name)
-        };
-
-        // First, try to a global object in the context with the given name
-        match f {
-            Ok(f) => {
-                // Then check if the global object found is a function. If it is, invoke it with the given arguments. If it is not, throw an exception.
-                if f.is_function() {
-                    trace!("Invoking JS function with name {}()", function_name);
-                    let func = f.as_function().unwrap();
-                    let result = foreign_function::invoke_js_function_with_java_parameters(
-                        _env, &obj, func, args,
-                    );
-                    result
-                } else {
-                    _env.throw_new(
-                        "java/lang/Exception",
-                        format!("{} is not a function", function_name),
-                    )
-                    .unwrap();
-                    JObject::null()
+                Err(e) => {
+                    handle_exception(e, ctx, obj, env);
+                    return None;
                 }
             }
-            Err(e) => {
-                handle_exception(e, &ctx, &obj, &mut _env);
-                JObject::null()
+        }
+        target.get(*function_name)
+    } else {
+        globals.get(function_name)
+    };
+
+    // First, try to a global object in the context with the given name
+    match f {
+        Ok(f) => {
+            // Then check if the global object found is a function. If it is not, throw an exception.
+            if f.is_function() {
+                f.into_function()
+            } else {
+                env.throw_new(
+                    "java/lang/Exception",
+                    format!("{} is not a function", function_name),
+                )
+                .unwrap();
+                None
             }
         }
+        Err(e) => {
+            handle_exception(e, ctx, obj, env);
+            None
+        }
+    }
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.invoke(long, String, Object... args)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_invoke<'a>(
+    mut _env: JNIEnv<'a>,
+    obj: JObject<'a>,
+    context_ptr: jlong,
+    name: JString<'a>,
+    args: JObjectArray<'a>,
+) -> JObject<'a> {
+    let context = ptr_to_context(context_ptr);
+    let function_name: String = _env
+        .get_string(&name)
+        .expect("Couldn't get java string!")
+        .into();
+
+    let r = context.with(move |ctx| match lookup_function(&ctx, &function_name, &obj, &mut _env) {
+        Some(func) => {
+            trace!("Invoking JS function with name {}()", function_name);
+            foreign_function::invoke_js_function_with_java_parameters(_env, &obj, &func, args)
+        }
+        None => JObject::null(),
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+    r
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.lookupFunction(long, String)
+/// Resolves the function once and returns it as QuickJSFunction, which can be called without resolving its name again.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_lookupFunction<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    obj: JObject<'a>,
+    context_ptr: jlong,
+    name: JString<'a>,
+) -> JObject<'a> {
+    let context = ptr_to_context(context_ptr);
+    let function_name: String = _env
+        .get_string(&name)
+        .expect("Couldn't get java string!")
+        .into();
+
+    let r = context.with(|ctx| match lookup_function(&ctx, &function_name, &obj, &mut _env) {
+        Some(func) => {
+            trace!("Resolved JS function with name {}()", function_name);
+            JSJavaProxy::new(Value::from_function(func))
+                .into_jobject(&obj, &mut _env)
+                .unwrap_or(JObject::null())
+        }
+        None => JObject::null(),
     });
     // Prevents dropping the context
     _ = context_to_ptr(context);
     r
 }
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSContext.invokeBatch(long, String, Object[][], Object[])
+/// The function is resolved once, then called for each tuple of arguments without leaving the native code.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSContext_invokeBatch<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    obj: JObject<'a>,
+    context_ptr: jlong,
+    name: JString<'a>,
+    tuples: JObjectArray<'a>,
+    results: JObjectArray<'a>,
+) {
+    let context = ptr_to_context(context_ptr);
+    let function_name: String = _env
+        .get_string(&name)
+        .expect("Couldn't get java string!")
+        .into();
+
+    context.with(|ctx| {
+        if let Some(func) = lookup_function(&ctx, &function_name, &obj, &mut _env) {
+            trace!("Invoking JS function with name {}() in batch", function_name);
+            foreign_function::invoke_js_function_batch(&mut _env, &obj, &func, &tuples, &results);
+        }
+    });
+    // Prevents dropping the context
+    _ = context_to_ptr(context);
+}
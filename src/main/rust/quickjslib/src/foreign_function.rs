@@ -101,3 +101,73 @@ pub(crate) fn invoke_js_function_with_java_parameters<'a>(
     };
     result
 }
+
+/// Number of local references reserved for a single call of a batch
+const BATCH_LOCAL_FRAME_CAPACITY: i32 = 32;
+
+/// Invokes a JS function once for each tuple of Java parameters and stores the converted results in `results`. All calls share a single locale setup
+/// and the local references of each call are released after the call, so arbitrary large batches can be processed within a single native call.
+/// Stops at the first failed call, whose exception is thrown as Java exception.
+pub(crate) fn invoke_js_function_batch<'a>(
+    env: &mut JNIEnv<'a>,
+    context: &JObject<'a>,
+    func: &Function<'_>,
+    tuples: &JObjectArray<'a>,
+    results: &JObjectArray<'a>,
+) {
+    let ctx = func.ctx();
+    let locale = with_locale::TemporaryLocale::new_default();
+    // The local frames of the calls require a reference to the context independent of the frame
+    let context = env.new_global_ref(context).unwrap();
+    let tuples_len = env.get_array_length(tuples).unwrap();
+
+    locale.with(|| {
+        for index in 0..tuples_len {
+            let success = env
+                .with_local_frame(
+                    BATCH_LOCAL_FRAME_CAPACITY,
+                    |env| -> jni::errors::Result<bool> {
+                        let parameters: JObjectArray =
+                            env.get_object_array_element(tuples, index)?.into();
+                        let args_len = if parameters.is_null() {
+                            0
+                        } else {
+                            env.get_array_length(&parameters)?
+                        };
+
+                        let mut args = Vec::with_capacity(args_len as usize);
+                        for i in 0..args_len {
+                            let arg = env.get_object_array_element(&parameters, i)?;
+                            args.push(java_js_proxy::ProxiedJavaValue::from_object(
+                                env,
+                                context.as_obj(),
+                                arg,
+                            ));
+                        }
+                        let mut args_js = Args::new(ctx.clone(), args.len());
+                        for arg_js in args.into_iter() {
+                            args_js.push_arg(arg_js).unwrap();
+                        }
+
+                        let s: Result<JSJavaProxy, _> = func.call_arg(args_js);
+                        match s {
+                            Ok(s) => {
+                                let result = s.into_jobject(context.as_obj(), env).unwrap();
+                                env.set_object_array_element(results, index, result)?;
+                                Ok(true)
+                            }
+                            Err(e) => {
+                                context::handle_exception(e, ctx, context.as_obj(), env);
+                                Ok(false)
+                            }
+                        }
+                    },
+                )
+                .unwrap();
+            if !success {
+                trace!("Batch invocation failed at index {}", index);
+                break;
+            }
+        }
+    });
+}
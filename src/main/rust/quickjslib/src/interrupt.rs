@@ -0,0 +1,311 @@
+use std::rc::Rc;
+use std::sync::atomic::{AtomicBool, AtomicU64, Ordering};
+use std::sync::Arc;
+use std::time::Instant;
+
+use jni::{
+    objects::JObject,
+    signature::{Primitive, ReturnType},
+    sys::jlong,
+    JNIEnv,
+};
+use log::{debug, trace};
+
+use crate::runtime::{ptr_to_runtime, runtime_to_ptr};
+
+/// State checked by the interrupt handler of a runtime. QuickJS calls the interrupt handler regularly while executing JS, so the checks are
+/// done entirely in native code without any JNI call. Java is only called if the script has to be interrupted.
+/// The state is shared with the Java QuickJSRuntime, which sets the deadline when a script is started and can request an interrupt from any thread.
+pub(crate) struct InterruptState {
+    /// Reference point of the deadline
+    epoch: Instant,
+    /// Deadline in nanoseconds since `epoch`, 0 if there is no deadline
+    deadline: AtomicU64,
+    /// Deadline in nanoseconds of CPU time of the thread running the script, 0 if there is no deadline
+    cpu_deadline: AtomicU64,
+    /// Number of calls of the interrupt handler. QuickJS calls it after a fixed number of operations, so this is a deterministic measure of
+    /// the work done by scripts. Only updated by the thread running the script.
+    operations: AtomicU64,
+    /// Value of `operations` at which the running script is interrupted, 0 if there is no limit
+    operation_deadline: AtomicU64,
+    /// Set by Java to interrupt the running script (e.g. if it was cancelled)
+    cancel: AtomicBool,
+}
+
+/// CPU time consumed by the calling thread in nanoseconds
+#[cfg(not(target_os = "windows"))]
+fn thread_cpu_time() -> u64 {
+    let mut ts = libc::timespec {
+        tv_sec: 0,
+        tv_nsec: 0,
+    };
+    unsafe { libc::clock_gettime(libc::CLOCK_THREAD_CPUTIME_ID, &mut ts) };
+    (ts.tv_sec as u64) * 1_000_000_000 + ts.tv_nsec as u64
+}
+
+/// CPU time consumed by the calling thread in nanoseconds. Windows has no thread CPU clock, so the kernel and user time of the
+/// thread are summed up (measured in 100 ns intervals).
+#[cfg(target_os = "windows")]
+fn thread_cpu_time() -> u64 {
+    #[repr(C)]
+    #[derive(Default)]
+    struct FileTime {
+        low: u32,
+        high: u32,
+    }
+
+    #[link(name = "kernel32")]
+    extern "system" {
+        fn GetCurrentThread() -> *mut std::ffi::c_void;
+        fn GetThreadTimes(
+            thread: *mut std::ffi::c_void,
+            creation_time: *mut FileTime,
+            exit_time: *mut FileTime,
+            kernel_time: *mut FileTime,
+            user_time: *mut FileTime,
+        ) -> i32;
+    }
+
+    let mut creation = FileTime::default();
+    let mut exit = FileTime::default();
+    let mut kernel = FileTime::default();
+    let mut user = FileTime::default();
+    let ok = unsafe {
+        GetThreadTimes(
+            GetCurrentThread(),
+            &mut creation,
+            &mut exit,
+            &mut kernel,
+            &mut user,
+        )
+    };
+    if ok == 0 {
+        return 0;
+    }
+    let intervals = |t: &FileTime| ((t.high as u64) << 32) | t.low as u64;
+    (intervals(&kernel) + intervals(&user)) * 100
+}
+
+impl InterruptState {
+    fn new() -> Self {
+        InterruptState {
+            epoch: Instant::now(),
+            deadline: AtomicU64::new(0),
+            cpu_deadline: AtomicU64::new(0),
+            operations: AtomicU64::new(0),
+            operation_deadline: AtomicU64::new(0),
+            cancel: AtomicBool::new(false),
+        }
+    }
+
+    /// Nanoseconds since `epoch` of the monotonic clock
+    fn now(&self) -> u64 {
+        self.epoch.elapsed().as_nanos() as u64
+    }
+
+    /// Checks if the running script has to be interrupted
+    fn should_interrupt(&self) -> bool {
+        // Only the thread running the script writes the counter, so no atomic increment is necessary
+        let operations = self.operations.load(Ordering::Relaxed) + 1;
+        self.operations.store(operations, Ordering::Relaxed);
+        let operation_deadline = self.operation_deadline.load(Ordering::Relaxed);
+        if operation_deadline != 0 && operations >= operation_deadline {
+            return true;
+        }
+        if self.cancel.load(Ordering::Relaxed) {
+            return true;
+        }
+        let deadline = self.deadline.load(Ordering::Relaxed);
+        if deadline != 0 && self.now() >= deadline {
+            return true;
+        }
+        // QuickJS polls the handler only every few thousand operations, so reading the CPU clock here is cheap enough.
+        // The handler is called on the thread running the script, whose CPU time is measured.
+        let cpu_deadline = self.cpu_deadline.load(Ordering::Relaxed);
+        cpu_deadline != 0 && thread_cpu_time() >= cpu_deadline
+    }
+}
+
+/// Converts a pointer back to the shared InterruptState
+fn ptr_to_state(state_ptr: jlong) -> Arc<InterruptState> {
+    unsafe { Arc::from_raw(state_ptr as *const InterruptState) }
+}
+
+fn state_to_ptr(state: Arc<InterruptState>) -> jlong {
+    Arc::into_raw(state) as jlong
+}
+
+// ---------------------- com.github.stefanrichterhuber.quickjs.QuickJSRuntime
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.createInterruptHandler(long ptr)
+/// Installs the interrupt handler of the runtime and returns a pointer to its state
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_createInterruptHandler<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    runtime_ptr: jlong,
+) -> jlong {
+    let runtime = ptr_to_runtime(runtime_ptr);
+    let state = Arc::new(InterruptState::new());
+
+    // Configure callback to runtime to allow java to interrupt running JS script
+    let target = Rc::new(_env.new_global_ref(_obj).unwrap());
+    let js_interrupt_id = _env
+        .get_method_id(
+            "com/github/stefanrichterhuber/quickjs/QuickJSRuntime",
+            "jsInterrupt",
+            "()Z",
+        )
+        .unwrap();
+    let vm = _env.get_java_vm().unwrap();
+
+    let handler_state = state.clone();
+    let handler = move || {
+        if !handler_state.should_interrupt() {
+            return false;
+        }
+        // Only now call Java, which reports the reason for the interrupt
+        let mut env = vm.get_env().unwrap();
+        let result = unsafe {
+            env.call_method_unchecked(
+                target.as_ref(),
+                js_interrupt_id,
+                ReturnType::Primitive(Primitive::Boolean),
+                &[],
+            )
+            .unwrap()
+        };
+        result.z().unwrap()
+    };
+    runtime.set_interrupt_handler(Some(Box::new(handler)));
+    debug!("Installed interrupt handler of QuickJS runtime");
+
+    // Prevents dropping the runtime
+    _ = runtime_to_ptr(runtime);
+    state_to_ptr(state)
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.closeInterruptHandler(long statePtr)
+/// Releases the reference of Java to the interrupt state. The handler itself is dropped with the runtime.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_closeInterruptHandler<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+) {
+    let state = ptr_to_state(state_ptr);
+    drop(state);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.setDeadline(long statePtr, long timeout)
+/// Sets the deadline of the running script to `timeout` nanoseconds from now (negative values remove the deadline).
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_setDeadline<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+    timeout: jlong,
+) {
+    let state = ptr_to_state(state_ptr);
+
+    let deadline = if timeout < 0 {
+        0
+    } else {
+        // 0 is reserved for 'no deadline'
+        state.now().saturating_add(timeout as u64).max(1)
+    };
+    state.deadline.store(deadline, Ordering::Relaxed);
+    trace!("Set deadline of QuickJS runtime to {} ns", deadline);
+
+    // Prevents dropping the state
+    _ = state_to_ptr(state);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.setCpuDeadline(long statePtr, long timeout)
+/// Sets the deadline of the running script to `timeout` nanoseconds of CPU time of the calling thread from now (negative values remove the deadline).
+/// Must be called on the thread running the script.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_setCpuDeadline<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+    timeout: jlong,
+) {
+    let state = ptr_to_state(state_ptr);
+
+    let deadline = if timeout < 0 {
+        0
+    } else {
+        // 0 is reserved for 'no deadline'
+        thread_cpu_time().saturating_add(timeout as u64).max(1)
+    };
+    state.cpu_deadline.store(deadline, Ordering::Relaxed);
+    trace!("Set CPU time deadline of QuickJS runtime to {} ns", deadline);
+
+    // Prevents dropping the state
+    _ = state_to_ptr(state);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.getOperations(long statePtr)
+/// Returns the number of operations (calls of the interrupt handler) counted so far
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_getOperations<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+) -> jlong {
+    let state = ptr_to_state(state_ptr);
+    let operations = state.operations.load(Ordering::Relaxed);
+
+    // Prevents dropping the state
+    _ = state_to_ptr(state);
+    operations as jlong
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.setOperationDeadline(long statePtr, long deadline)
+/// Interrupts the running script when the number of operations reaches `deadline` (values <= 0 remove the limit)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_setOperationDeadline<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+    deadline: jlong,
+) {
+    let state = ptr_to_state(state_ptr);
+    state
+        .operation_deadline
+        .store(deadline.max(0) as u64, Ordering::Relaxed);
+    trace!("Set operation deadline of QuickJS runtime to {}", deadline);
+
+    // Prevents dropping the state
+    _ = state_to_ptr(state);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.setInterruptRequested(long statePtr, boolean requested)
+/// Requests (or resets) the interrupt of the running script. Can be called from any thread.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_setInterruptRequested<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    state_ptr: jlong,
+    requested: jni::sys::jboolean,
+) {
+    let state = ptr_to_state(state_ptr);
+    state.cancel.store(requested != 0, Ordering::Relaxed);
+
+    // Prevents dropping the state
+    _ = state_to_ptr(state);
+}
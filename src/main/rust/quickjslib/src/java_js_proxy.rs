@@ -1,27 +1,34 @@
 use std::rc::Rc;
 
-use jni::errors;
-use jni::objects::{GlobalRef, JObjectArray, JThrowable, JValueGen};
+use jni::objects::{
+    GlobalRef, JByteArray, JByteBuffer, JDoubleArray, JFieldID, JFloatArray, JIntArray, JLongArray,
+    JMethodID, JObjectArray, JThrowable, JValue,
+};
+use jni::signature::{Primitive, ReturnType};
 use jni::{
     objects::{JObject, JString},
     JNIEnv,
 };
 use log::{error, trace, warn};
-use rquickjs::function::{IntoJsFunc, ParamRequirement};
+use rquickjs::function::{Constructor, IntoJsFunc, ParamRequirement};
 use rquickjs::{BigInt, Exception, FromJs, Function, IntoJs, Value};
 
 use crate::foreign_function::{function_to_ptr, ptr_to_function};
+use crate::jni_registry::JniRegistry;
 use crate::js_java_proxy::JSJavaProxy;
+use crate::js_view::{ptr_to_value, value_to_ptr};
+use crate::promise::JavaCompletionStage;
+use crate::shared_buffer;
 
-/// Type for the function called with the iterator_collect method
-///
-type ForEachFn<'vm, T> = Box<dyn Fn(&mut JNIEnv<'vm>, &JObject<'vm>, JObject<'vm>) -> T + 'vm>;
+/// Number of local references reserved for the conversion of a single element of a Java collection
+const ELEMENT_LOCAL_FRAME_CAPACITY: i32 = 16;
 
 /// JS Wrapper for com.github.stefanrichterhuber.quickjs.VariadicFunction
 pub struct VariadicFunction {
     target: Rc<GlobalRef>,
     context: Rc<GlobalRef>,
     vm: jni::JavaVM,
+    apply_id: JMethodID,
 }
 
 impl VariadicFunction {
@@ -29,11 +36,18 @@ impl VariadicFunction {
     /// * `target` - A java object of type com.github.stefanrichterhuber.quickjs.VariadicFunction
     /// * `context` - A java object of type com.github.stefanrichterhuber.quickjs.QuickJSContext
     /// * `vm` - A java vm object
-    fn new(target: Rc<GlobalRef>, context: Rc<GlobalRef>, vm: jni::JavaVM) -> VariadicFunction {
+    /// * `apply_id` - Method id of com.github.stefanrichterhuber.quickjs.VariadicFunction.apply(Object...)
+    fn new(
+        target: Rc<GlobalRef>,
+        context: Rc<GlobalRef>,
+        vm: jni::JavaVM,
+        apply_id: JMethodID,
+    ) -> VariadicFunction {
         VariadicFunction {
             target,
             context,
             vm,
+            apply_id,
         }
     }
 }
@@ -75,12 +89,14 @@ impl<'js, P> IntoJsFunc<'js, P> for VariadicFunction {
         trace!("Calling java function com.github.stefanrichterhuber.quickjs.VariadicFunction");
 
         // Then finally call function
-        let call_result = env.call_method(
-            self.target.as_ref(),
-            "apply",
-            "([Ljava/lang/Object;)Ljava/lang/Object;",
-            &[jni::objects::JValueGen::Object(&args_array)],
-        );
+        let call_result = unsafe {
+            env.call_method_unchecked(
+                self.target.as_ref(),
+                self.apply_id,
+                ReturnType::Object,
+                &[JValue::Object(&args_array).as_jni()],
+            )
+        };
 
         let result = if env.exception_check().unwrap() {
             let exception = env.exception_occurred().unwrap();
@@ -94,6 +110,548 @@ impl<'js, P> IntoJsFunc<'js, P> for VariadicFunction {
     }
 }
 
+/// Reference to a Java collection (java.lang.Iterable, java.lang.Object[] or java.util.Map). Its elements are not copied when the ProxiedJavaValue is created,
+/// but streamed one after the other directly into the JS array / object when the JS value is created. This keeps the conversion linear and avoids an intermediate copy of all elements.
+/// Each element is converted within its own JNI local frame, so even huge collections do not exhaust the local reference table.
+pub struct JavaCollection {
+    target: GlobalRef,
+    context: GlobalRef,
+    vm: jni::JavaVM,
+}
+
+impl JavaCollection {
+    /// Creates a new JavaCollection
+    /// * `context` - A java object of type com.github.stefanrichterhuber.quickjs.QuickJSContext
+    /// * `target` - The Java collection
+    fn new<'vm>(env: &mut JNIEnv<'vm>, context: &JObject<'vm>, target: &JObject<'vm>) -> Self {
+        JavaCollection {
+            target: env.new_global_ref(target).unwrap(),
+            context: env.new_global_ref(context).unwrap(),
+            // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
+            vm: env.get_java_vm().unwrap(),
+        }
+    }
+
+    /// Streams all elements of a java.lang.Iterable into a new JS array
+    fn iterable_into_js<'js>(self, ctx: &rquickjs::Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let mut env = self.vm.get_env().unwrap();
+        let registry = JniRegistry::get(&mut env);
+        let array = rquickjs::Array::new(ctx.clone())?;
+
+        // Create an iterator over all elements
+        let iterator = unsafe {
+            env.call_method_unchecked(
+                self.target.as_obj(),
+                registry.iterable_iterator,
+                ReturnType::Object,
+                &[],
+            )
+        }
+        .unwrap()
+        .l()
+        .unwrap();
+
+        let mut index: usize = 0;
+        loop {
+            // Check if there is another item
+            let has_next = unsafe {
+                env.call_method_unchecked(
+                    &iterator,
+                    registry.iterator_has_next,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[],
+                )
+            }
+            .unwrap()
+            .z()
+            .unwrap();
+            if !has_next {
+                break;
+            }
+
+            // Map next item
+            let value = env
+                .with_local_frame(
+                    ELEMENT_LOCAL_FRAME_CAPACITY,
+                    |env| -> jni::errors::Result<ProxiedJavaValue> {
+                        let next = unsafe {
+                            env.call_method_unchecked(
+                                &iterator,
+                                registry.iterator_next,
+                                ReturnType::Object,
+                                &[],
+                            )
+                        }?
+                        .l()?;
+                        Ok(ProxiedJavaValue::from_object(
+                            env,
+                            self.context.as_obj(),
+                            next,
+                        ))
+                    },
+                )
+                .unwrap();
+            array.set(index, value)?;
+            index += 1;
+        }
+        env.delete_local_ref(iterator).unwrap();
+
+        Ok(Value::from_array(array))
+    }
+
+    /// Streams all java.lang.String elements of a java.lang.Iterable (the key set of a map) into a new JS array of property keys.
+    /// Other keys are skipped: JS property keys are strings, and the other traps of a lazily bound map only look up String keys.
+    fn string_keys_into_js<'js>(self, ctx: &rquickjs::Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let mut env = self.vm.get_env().unwrap();
+        let registry = JniRegistry::get(&mut env);
+        let array = rquickjs::Array::new(ctx.clone())?;
+
+        let iterator = unsafe {
+            env.call_method_unchecked(
+                self.target.as_obj(),
+                registry.iterable_iterator,
+                ReturnType::Object,
+                &[],
+            )
+        }
+        .unwrap()
+        .l()
+        .unwrap();
+
+        let mut index: usize = 0;
+        loop {
+            let has_next = unsafe {
+                env.call_method_unchecked(
+                    &iterator,
+                    registry.iterator_has_next,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[],
+                )
+            }
+            .unwrap()
+            .z()
+            .unwrap();
+            if !has_next {
+                break;
+            }
+
+            let key = env
+                .with_local_frame(
+                    ELEMENT_LOCAL_FRAME_CAPACITY,
+                    |env| -> jni::errors::Result<Option<String>> {
+                        let next = unsafe {
+                            env.call_method_unchecked(
+                                &iterator,
+                                registry.iterator_next,
+                                ReturnType::Object,
+                                &[],
+                            )
+                        }?
+                        .l()?;
+                        if next.is_null() || !JniRegistry::is_instance_of(env, &next, &registry.string) {
+                            return Ok(None);
+                        }
+                        Ok(Some(env.get_string(&JString::from(next))?.into()))
+                    },
+                )
+                .unwrap();
+            if let Some(key) = key {
+                array.set(index, key)?;
+                index += 1;
+            }
+        }
+        env.delete_local_ref(iterator).unwrap();
+
+        Ok(Value::from_array(array))
+    }
+
+    /// Streams all elements of a java.lang.Object[] into a new JS array
+    fn object_array_into_js<'js>(self, ctx: &rquickjs::Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let mut env = self.vm.get_env().unwrap();
+        let array = rquickjs::Array::new(ctx.clone())?;
+
+        let java_array = JObjectArray::from(env.new_local_ref(self.target.as_obj()).unwrap());
+        let len = env.get_array_length(&java_array).unwrap();
+
+        for i in 0..len {
+            let value = env
+                .with_local_frame(
+                    ELEMENT_LOCAL_FRAME_CAPACITY,
+                    |env| -> jni::errors::Result<ProxiedJavaValue> {
+                        let element = env.get_object_array_element(&java_array, i)?;
+                        Ok(ProxiedJavaValue::from_object(
+                            env,
+                            self.context.as_obj(),
+                            element,
+                        ))
+                    },
+                )
+                .unwrap();
+            array.set(i as usize, value)?;
+        }
+        env.delete_local_ref(java_array).unwrap();
+
+        Ok(Value::from_array(array))
+    }
+
+    /// Streams all entries of a java.util.Map into a new JS object
+    fn map_into_js<'js>(self, ctx: &rquickjs::Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let mut env = self.vm.get_env().unwrap();
+        let registry = JniRegistry::get(&mut env);
+        let obj = rquickjs::Object::new(ctx.clone())?;
+
+        // Fetch the entry set and create an iterator over all entries
+        let entry_set = unsafe {
+            env.call_method_unchecked(
+                self.target.as_obj(),
+                registry.map_entry_set,
+                ReturnType::Object,
+                &[],
+            )
+        }
+        .unwrap()
+        .l()
+        .unwrap();
+        let iterator = unsafe {
+            env.call_method_unchecked(
+                &entry_set,
+                registry.iterable_iterator,
+                ReturnType::Object,
+                &[],
+            )
+        }
+        .unwrap()
+        .l()
+        .unwrap();
+
+        loop {
+            // Check if there is another entry
+            let has_next = unsafe {
+                env.call_method_unchecked(
+                    &iterator,
+                    registry.iterator_has_next,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[],
+                )
+            }
+            .unwrap()
+            .z()
+            .unwrap();
+            if !has_next {
+                break;
+            }
+
+            // Map next entry to a pair of String and ProxiedJavaValue
+            let (key, value) = env
+                .with_local_frame(
+                    ELEMENT_LOCAL_FRAME_CAPACITY,
+                    |env| -> jni::errors::Result<(String, ProxiedJavaValue)> {
+                        let entry = unsafe {
+                            env.call_method_unchecked(
+                                &iterator,
+                                registry.iterator_next,
+                                ReturnType::Object,
+                                &[],
+                            )
+                        }?
+                        .l()?;
+
+                        let key: JString = unsafe {
+                            env.call_method_unchecked(
+                                &entry,
+                                registry.map_entry_get_key,
+                                ReturnType::Object,
+                                &[],
+                            )
+                        }?
+                        .l()?
+                        .into();
+                        let key: String = env.get_string(&key)?.into();
+
+                        let value = unsafe {
+                            env.call_method_unchecked(
+                                &entry,
+                                registry.map_entry_get_value,
+                                ReturnType::Object,
+                                &[],
+                            )
+                        }?
+                        .l()?;
+                        let value = ProxiedJavaValue::from_object(env, self.context.as_obj(), value);
+
+                        Ok((key, value))
+                    },
+                )
+                .unwrap();
+            obj.set(key.as_str(), value)?;
+        }
+        env.delete_local_ref(iterator).unwrap();
+        env.delete_local_ref(entry_set).unwrap();
+
+        Ok(Value::from_object(obj))
+    }
+
+    /// Binds a java.util.Map lazily to a JS Proxy. No entries are copied, instead all property accesses are forwarded by the traps of the Proxy handler to the Java map.
+    fn lazy_map_into_js<'js>(self, ctx: &rquickjs::Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let env = self.vm.get_env().unwrap();
+        let map = Rc::new(self.target);
+        let context = Rc::new(self.context);
+
+        let handler = rquickjs::Object::new(ctx.clone())?;
+        for trap in [
+            MapTrap::Get,
+            MapTrap::Has,
+            MapTrap::OwnKeys,
+            MapTrap::GetOwnPropertyDescriptor,
+            MapTrap::Set,
+            MapTrap::DeleteProperty,
+        ] {
+            let f = LazyMapTrap {
+                trap,
+                map: map.clone(),
+                context: context.clone(),
+                vm: env.get_java_vm().unwrap(),
+            };
+            let func = Function::new::<JObject, LazyMapTrap>(ctx.clone(), f)?;
+            handler.set(trap.name(), func)?;
+        }
+
+        let proxy: Constructor = ctx.globals().get("Proxy")?;
+        let target = rquickjs::Object::new(ctx.clone())?;
+        proxy.construct((target, handler))
+    }
+}
+
+/// Traps of the JS Proxy handler of a lazily bound java.util.Map
+#[derive(Clone, Copy)]
+enum MapTrap {
+    Get,
+    Has,
+    OwnKeys,
+    GetOwnPropertyDescriptor,
+    Set,
+    DeleteProperty,
+}
+
+impl MapTrap {
+    /// Name of the trap in the Proxy handler
+    fn name(&self) -> &'static str {
+        match self {
+            MapTrap::Get => "get",
+            MapTrap::Has => "has",
+            MapTrap::OwnKeys => "ownKeys",
+            MapTrap::GetOwnPropertyDescriptor => "getOwnPropertyDescriptor",
+            MapTrap::Set => "set",
+            MapTrap::DeleteProperty => "deleteProperty",
+        }
+    }
+}
+
+/// JS function implementing a single trap of the Proxy handler of a lazily bound java.util.Map. Each call is directly forwarded to the Java map.
+/// Nested maps are bound lazily, too. Symbol keys are never forwarded to Java, but stored on the Proxy target instead.
+pub struct LazyMapTrap {
+    trap: MapTrap,
+    map: Rc<GlobalRef>,
+    context: Rc<GlobalRef>,
+    vm: jni::JavaVM,
+}
+
+impl LazyMapTrap {
+    /// Converts a pending Java exception to a JS exception
+    fn exception<'js>(
+        env: &mut JNIEnv<'_>,
+        ctx: &rquickjs::Ctx<'js>,
+    ) -> Option<rquickjs::Result<Value<'js>>> {
+        if env.exception_check().unwrap() {
+            let exception = env.exception_occurred().unwrap();
+            Some(ProxiedJavaValue::from_throwable(env, exception).into_js(ctx))
+        } else {
+            None
+        }
+    }
+
+    /// Forwards a trap call with a non-string (Symbol) key to the Proxy target using the matching `Reflect` method,
+    /// so these properties behave like on any plain JS object instead of failing in strict mode.
+    fn forward_to_target<'js>(
+        &self,
+        ctx: &rquickjs::Ctx<'js>,
+        params: &rquickjs::function::Params<'_, 'js>,
+    ) -> rquickjs::Result<Value<'js>> {
+        let arg = |i: usize| params.arg(i).unwrap_or_else(|| Value::new_undefined(ctx.clone()));
+        let reflect: rquickjs::Object = ctx.globals().get("Reflect")?;
+        let method: Function = reflect.get(self.trap.name())?;
+        match self.trap {
+            MapTrap::Set => method.call((arg(0), arg(1), arg(2))),
+            _ => method.call((arg(0), arg(1))),
+        }
+    }
+
+    /// Calls a method with a single key parameter on the Java map
+    fn call_with_key<'vm>(
+        &self,
+        env: &mut JNIEnv<'vm>,
+        method_id: JMethodID,
+        return_type: ReturnType,
+        key: &JObject<'vm>,
+    ) -> jni::errors::Result<jni::objects::JValueOwned<'vm>> {
+        unsafe {
+            env.call_method_unchecked(
+                self.map.as_obj(),
+                method_id,
+                return_type,
+                &[JValue::Object(key).as_jni()],
+            )
+        }
+    }
+
+    /// Fetches the value of the given key from the Java map. Returns `None` if there is no such key.
+    fn get_value<'vm>(
+        &self,
+        env: &mut JNIEnv<'vm>,
+        key: &JObject<'vm>,
+    ) -> Option<ProxiedJavaValue> {
+        let registry = JniRegistry::get(env);
+        let call_result = self.call_with_key(env, registry.map_get, ReturnType::Object, key);
+        if env.exception_check().unwrap() {
+            let exception = env.exception_occurred().unwrap();
+            return Some(ProxiedJavaValue::from_throwable(env, exception));
+        }
+        let value = call_result.unwrap().l().unwrap();
+
+        if value.is_null() {
+            // Distinguish between missing keys (undefined) and null values
+            let contains_key = self
+                .call_with_key(
+                    env,
+                    registry.map_contains_key,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    key,
+                )
+                .and_then(|v| v.z())
+                .unwrap_or(false);
+            if contains_key {
+                Some(ProxiedJavaValue::Null)
+            } else {
+                None
+            }
+        } else if JniRegistry::is_instance_of(env, &value, &registry.map) {
+            Some(ProxiedJavaValue::LazyMap(JavaCollection::new(
+                env,
+                self.context.as_obj(),
+                &value,
+            )))
+        } else {
+            Some(ProxiedJavaValue::from_object(
+                env,
+                self.context.as_obj(),
+                value,
+            ))
+        }
+    }
+}
+
+impl<'js, P> IntoJsFunc<'js, P> for LazyMapTrap {
+    fn param_requirements() -> rquickjs::function::ParamRequirement {
+        // Traps are called with the target object, the property key and (only set) the new value
+        ParamRequirement::any()
+    }
+
+    fn call<'a>(
+        &self,
+        params: rquickjs::function::Params<'a, 'js>,
+    ) -> rquickjs::Result<Value<'js>> {
+        let ctx = params.ctx();
+        let mut env = self.vm.get_env().unwrap();
+        let registry = JniRegistry::get(&mut env);
+
+        if let MapTrap::OwnKeys = self.trap {
+            trace!("Calling ownKeys() of lazily bound java.util.Map");
+            let call_result = unsafe {
+                env.call_method_unchecked(
+                    self.map.as_obj(),
+                    registry.map_key_set,
+                    ReturnType::Object,
+                    &[],
+                )
+            };
+            if let Some(exception) = LazyMapTrap::exception(&mut env, ctx) {
+                return exception;
+            }
+            let key_set = call_result.unwrap().l().unwrap();
+            return JavaCollection::new(&mut env, self.context.as_obj(), &key_set).string_keys_into_js(ctx);
+        }
+
+        // All other traps require a string key, everything else is kept on the Proxy target
+        let key = params
+            .arg(1)
+            .and_then(|key| key.as_string().map(|key| key.to_string().unwrap()));
+        let key = match key {
+            Some(key) => env.new_string(key).unwrap(),
+            None => return self.forward_to_target(ctx, &params),
+        };
+        trace!("Calling {}() of lazily bound java.util.Map", self.trap.name());
+
+        match self.trap {
+            MapTrap::Get => match self.get_value(&mut env, &key) {
+                Some(value) => value.into_js(ctx),
+                None => Ok(Value::new_undefined(ctx.clone())),
+            },
+            MapTrap::Has => {
+                let call_result = self.call_with_key(
+                    &mut env,
+                    registry.map_contains_key,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &key,
+                );
+                if let Some(exception) = LazyMapTrap::exception(&mut env, ctx) {
+                    return exception;
+                }
+                let contains_key = call_result.unwrap().z().unwrap();
+                Ok(Value::new_bool(ctx.clone(), contains_key))
+            }
+            MapTrap::GetOwnPropertyDescriptor => match self.get_value(&mut env, &key) {
+                Some(value) => {
+                    let descriptor = rquickjs::Object::new(ctx.clone())?;
+                    descriptor.set("value", value)?;
+                    descriptor.set("writable", true)?;
+                    descriptor.set("enumerable", true)?;
+                    descriptor.set("configurable", true)?;
+                    Ok(Value::from_object(descriptor))
+                }
+                None => Ok(Value::new_undefined(ctx.clone())),
+            },
+            MapTrap::Set => {
+                let value = match params.arg(2) {
+                    Some(value) => JSJavaProxy::new(value)
+                        .into_jobject(self.context.as_obj(), &mut env)
+                        .unwrap_or(JObject::null()),
+                    None => JObject::null(),
+                };
+                let _ = unsafe {
+                    env.call_method_unchecked(
+                        self.map.as_obj(),
+                        registry.map_put,
+                        ReturnType::Object,
+                        &[JValue::Object(&key).as_jni(), JValue::Object(&value).as_jni()],
+                    )
+                };
+                if let Some(exception) = LazyMapTrap::exception(&mut env, ctx) {
+                    return exception;
+                }
+                Ok(Value::new_bool(ctx.clone(), true))
+            }
+            MapTrap::DeleteProperty => {
+                let _ = self.call_with_key(&mut env, registry.map_remove, ReturnType::Object, &key);
+                if let Some(exception) = LazyMapTrap::exception(&mut env, ctx) {
+                    return exception;
+                }
+                Ok(Value::new_bool(ctx.clone(), true))
+            }
+            MapTrap::OwnKeys => unreachable!(),
+        }
+    }
+}
+
 /// This the intermediate value when converting a Java to a JS value.
 pub enum ProxiedJavaValue {
     Throwable(String, String, String, i32),
@@ -108,36 +666,106 @@ pub enum ProxiedJavaValue {
     VarFunction(VariadicFunction),
     BiFunction(Box<dyn Fn(Value<'_>, Value<'_>) -> ProxiedJavaValue>),
     Supplier(Box<dyn Fn() -> ProxiedJavaValue>),
-    Map(Vec<(String, ProxiedJavaValue)>),
+    Map(JavaCollection),
     JSFunction(i64),
-    Array(Vec<ProxiedJavaValue>),
+    Iterable(JavaCollection),
+    ObjectArray(JavaCollection),
+    Int8Array(Vec<i8>),
+    Int32Array(Vec<i32>),
+    BigInt64Array(Vec<i64>),
+    Float32Array(Vec<f32>),
+    Float64Array(Vec<f64>),
+    SharedBuffer(GlobalRef, *mut u8, usize),
+    JSValue(i64),
+    LazyMap(JavaCollection),
+    CompletionStage(JavaCompletionStage),
 }
 
 impl ProxiedJavaValue {
-    fn is_instance_of<'vm>(class: &str, env: &mut JNIEnv<'vm>, obj: &JObject<'vm>) -> bool {
-        let class_obj = env.find_class(class);
-
-        match class_obj {
-            Ok(class_obj) => env.is_instance_of(obj, class_obj).unwrap_or(false),
-            Err(_) => {
-                // Failing to find class causes an exception -> clear it
-                // env.exception_describe().unwrap();
-                env.exception_clear().unwrap();
-                error!("Unable to find class {}", &class);
-                false
-            }
-        }
-    }
-
     /**
      * Checks if the given JObject is actually an array
      */
     fn is_array<'vm>(env: &mut JNIEnv<'vm>, obj: &JObject<'vm>) -> bool {
+        let is_array_id = JniRegistry::get(env).class_is_array;
         let class = env.get_object_class(obj).unwrap();
-        let is_array = env.call_method(class, "isArray", "()Z", &[]).unwrap();
+        let is_array = unsafe {
+            env.call_method_unchecked(
+                class,
+                is_array_id,
+                ReturnType::Primitive(Primitive::Boolean),
+                &[],
+            )
+        }
+        .unwrap();
         is_array.z().unwrap()
     }
 
+    /// Copies a Java primitive array (byte[], int[], long[], float[], double[]) with a single bulk copy into a Vec. The Vec is later on handed over to a JS TypedArray without any further copy.
+    /// Returns `None` if the object is not one of the supported primitive arrays.
+    fn from_primitive_array<'vm>(env: &mut JNIEnv<'vm>, obj: &JObject<'vm>) -> Option<Self> {
+        let registry = JniRegistry::get(env);
+
+        if JniRegistry::is_instance_of(env, obj, &registry.double_array) {
+            let array = <&JDoubleArray>::from(obj);
+            let len = env.get_array_length(array).unwrap() as usize;
+            let mut values = vec![0f64; len];
+            env.get_double_array_region(array, 0, &mut values).unwrap();
+            trace!("Map Java double[] to JS Float64Array");
+            Some(ProxiedJavaValue::Float64Array(values))
+        } else if JniRegistry::is_instance_of(env, obj, &registry.int_array) {
+            let array = <&JIntArray>::from(obj);
+            let len = env.get_array_length(array).unwrap() as usize;
+            let mut values = vec![0i32; len];
+            env.get_int_array_region(array, 0, &mut values).unwrap();
+            trace!("Map Java int[] to JS Int32Array");
+            Some(ProxiedJavaValue::Int32Array(values))
+        } else if JniRegistry::is_instance_of(env, obj, &registry.byte_array) {
+            let array = <&JByteArray>::from(obj);
+            let len = env.get_array_length(array).unwrap() as usize;
+            let mut values = vec![0i8; len];
+            env.get_byte_array_region(array, 0, &mut values).unwrap();
+            trace!("Map Java byte[] to JS Int8Array");
+            Some(ProxiedJavaValue::Int8Array(values))
+        } else if JniRegistry::is_instance_of(env, obj, &registry.long_array) {
+            let array = <&JLongArray>::from(obj);
+            let len = env.get_array_length(array).unwrap() as usize;
+            let mut values = vec![0i64; len];
+            env.get_long_array_region(array, 0, &mut values).unwrap();
+            trace!("Map Java long[] to JS BigInt64Array");
+            Some(ProxiedJavaValue::BigInt64Array(values))
+        } else if JniRegistry::is_instance_of(env, obj, &registry.float_array) {
+            let array = <&JFloatArray>::from(obj);
+            let len = env.get_array_length(array).unwrap() as usize;
+            let mut values = vec![0f32; len];
+            env.get_float_array_region(array, 0, &mut values).unwrap();
+            trace!("Map Java float[] to JS Float32Array");
+            Some(ProxiedJavaValue::Float32Array(values))
+        } else {
+            None
+        }
+    }
+
+    /// Shares the native memory of a Java direct java.nio.ByteBuffer with JS. Heap buffers can not be shared and result in a JS exception.
+    fn from_byte_buffer<'vm>(env: &mut JNIEnv<'vm>, obj: JObject<'vm>) -> Self {
+        let buffer = JByteBuffer::from(obj);
+        match env.get_direct_buffer_address(&buffer) {
+            Ok(address) => {
+                let len = env.get_direct_buffer_capacity(&buffer).unwrap();
+                trace!("Map Java direct ByteBuffer to JS ArrayBuffer");
+                ProxiedJavaValue::SharedBuffer(env.new_global_ref(buffer).unwrap(), address, len)
+            }
+            Err(_) => {
+                error!("Only direct java.nio.ByteBuffer can be shared with JS");
+                ProxiedJavaValue::Throwable(
+                    "Only direct java.nio.ByteBuffer can be shared with JS".to_string(),
+                    "java.lang.IllegalArgumentException".to_string(),
+                    "".to_string(),
+                    0,
+                )
+            }
+        }
+    }
+
     /// Creates a ProxiedJavaValue from a Java Throwable
     pub fn from_throwable<'vm>(env: &mut JNIEnv<'vm>, throwable: JThrowable<'vm>) -> Self {
         // @see https://stackoverflow.com/questions/27072459/how-to-get-the-message-from-a-java-exception-caught-in-jni
@@ -231,17 +859,7 @@ impl ProxiedJavaValue {
             ProxiedJavaValue::from_null()
         } else {
             trace!("Create JS array from Java java.lang.Object[]");
-            // Result of the operation -> a list of values
-            let mut items: Vec<ProxiedJavaValue> = vec![];
-
-            let len = env.get_array_length(&array).unwrap();
-
-            for i in 0..len {
-                let element = env.get_object_array_element(&array, i).unwrap();
-                let value = ProxiedJavaValue::from_object(env, context, element);
-                items.push(value);
-            }
-            ProxiedJavaValue::Array(items)
+            ProxiedJavaValue::ObjectArray(JavaCollection::new(env, context, &array))
         }
     }
 
@@ -252,37 +870,69 @@ impl ProxiedJavaValue {
         obj: JObject<'vm>,
     ) -> Self {
         trace!("Create JS array from Java java.lang.Iterable");
-
-        // Create an iterator over all results
-        let iterator_result: errors::Result<JValueGen<JObject<'_>>> =
-            env.call_method(&obj, "iterator", "()Ljava/util/Iterator;", &[]);
-        let iterator = iterator_result.unwrap().l().unwrap();
-
-        let items = ProxiedJavaValue::iterator_collect(
-            env,
-            context,
-            iterator,
-            Box::new(|env, context, value| ProxiedJavaValue::from_object(env, context, value)),
-        );
-
-        ProxiedJavaValue::Array(items)
+        ProxiedJavaValue::Iterable(JavaCollection::new(env, context, &obj))
     }
 
     /// Unwraps a QuickJSFunction back to a javascript function
     fn from_quick_js_function<'vm>(env: &mut JNIEnv<'vm>, obj: JObject<'vm>) -> Self {
         trace!("Unwrap Java QuickJSFunction to JS function",);
+        let ptr_id = JniRegistry::get(env).quickjs_function_ptr.unwrap();
 
-        let ptr_result = env.get_field(&obj, "ptr", "J");
+        let ptr_result = unsafe {
+            env.get_field_unchecked(&obj, ptr_id, ReturnType::Primitive(Primitive::Long))
+        };
         let ptr = ptr_result.unwrap().j().unwrap();
         ProxiedJavaValue::JSFunction(ptr)
     }
 
+    /// Unwraps a QuickJSObject or QuickJSArray back to the javascript value it is a view of. The JS value is owned by the context of the view,
+    /// so views of closed contexts and views of other contexts (and runtimes) are rejected with a Java exception.
+    fn from_js_view<'vm>(
+        env: &mut JNIEnv<'vm>,
+        context: &JObject<'vm>,
+        obj: JObject<'vm>,
+        ptr_id: JFieldID,
+        ctx_id: JFieldID,
+    ) -> Self {
+        trace!("Unwrap Java QuickJSObject / QuickJSArray to JS value",);
+        let ptr_result = unsafe {
+            env.get_field_unchecked(&obj, ptr_id, ReturnType::Primitive(Primitive::Long))
+        };
+        let ptr = ptr_result.unwrap().j().unwrap();
+        if ptr == 0 {
+            // The QuickJSContext already released the JS value
+            error!("Lazy view of a closed QuickJSContext can not be passed to JS");
+            return ProxiedJavaValue::Throwable(
+                "Lazy view of a closed QuickJSContext can not be passed to JS".to_string(),
+                "java.lang.IllegalStateException".to_string(),
+                "".to_string(),
+                0,
+            );
+        }
+        let ctx_result = unsafe { env.get_field_unchecked(&obj, ctx_id, ReturnType::Object) };
+        let view_context = ctx_result.unwrap().l().unwrap();
+        let same_context = !context.is_null() && env.is_same_object(&view_context, context).unwrap();
+        env.delete_local_ref(view_context).unwrap();
+        if !same_context {
+            error!("Lazy views can only be passed to the QuickJSContext they were created by");
+            return ProxiedJavaValue::Throwable(
+                "Lazy views can only be passed to the QuickJSContext they were created by".to_string(),
+                "java.lang.IllegalArgumentException".to_string(),
+                "".to_string(),
+                0,
+            );
+        }
+
+        ProxiedJavaValue::JSValue(ptr)
+    }
+
     /// Wraps a com.github.stefanrichterhuber.quickjs.VariadicFunction into a JS function
     fn from_variadic_function<'vm>(
         env: &mut JNIEnv<'vm>,
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let apply_id = JniRegistry::get(env).variadic_function_apply.unwrap();
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -290,7 +940,7 @@ impl ProxiedJavaValue {
         trace!(
             "Create JS function from Java com.github.stefanrichterhuber.quickjs.VariadicFunction"
         );
-        ProxiedJavaValue::VarFunction(VariadicFunction::new(target, context, vm))
+        ProxiedJavaValue::VarFunction(VariadicFunction::new(target, context, vm, apply_id))
     }
 
     /// Wraps a java.util.function.BiConsumer into a JS function
@@ -299,6 +949,7 @@ impl ProxiedJavaValue {
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let accept_id = JniRegistry::get(env).bi_consumer_accept;
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -315,17 +966,14 @@ impl ProxiedJavaValue {
             let p2 = JSJavaProxy::new(v2)
                 .into_jobject(&context, &mut env)
                 .unwrap();
-            let _call_result = env
-                .call_method(
+            let _call_result = unsafe {
+                env.call_method_unchecked(
                     target.as_ref(),
-                    "accept",
-                    "(Ljava/lang/Object;Ljava/lang/Object;)V",
-                    &[
-                        jni::objects::JValueGen::Object(&p1),
-                        jni::objects::JValueGen::Object(&p2),
-                    ],
+                    accept_id,
+                    ReturnType::Primitive(Primitive::Void),
+                    &[JValue::Object(&p1).as_jni(), JValue::Object(&p2).as_jni()],
                 )
-                .unwrap();
+            };
 
             let result = if env.exception_check().unwrap() {
                 let exception = env.exception_occurred().unwrap();
@@ -346,6 +994,7 @@ impl ProxiedJavaValue {
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let accept_id = JniRegistry::get(env).consumer_accept;
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -358,14 +1007,14 @@ impl ProxiedJavaValue {
             let p1 = JSJavaProxy::new(v1)
                 .into_jobject(&context, &mut env)
                 .unwrap();
-            let _call_result = env
-                .call_method(
+            let _call_result = unsafe {
+                env.call_method_unchecked(
                     target.as_ref(),
-                    "accept",
-                    "(Ljava/lang/Object;)V",
-                    &[jni::objects::JValueGen::Object(&p1)],
+                    accept_id,
+                    ReturnType::Primitive(Primitive::Void),
+                    &[JValue::Object(&p1).as_jni()],
                 )
-                .unwrap();
+            };
 
             let result = if env.exception_check().unwrap() {
                 let exception = env.exception_occurred().unwrap();
@@ -386,6 +1035,7 @@ impl ProxiedJavaValue {
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let get_id = JniRegistry::get(env).supplier_get;
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -395,8 +1045,9 @@ impl ProxiedJavaValue {
             trace!("Calling java function java.util.function.Supplier");
             let mut env = vm.get_env().unwrap();
 
-            let call_result: errors::Result<JValueGen<JObject<'_>>> =
-                env.call_method(target.as_ref(), "get", "()Ljava/lang/Object;", &[]);
+            let call_result = unsafe {
+                env.call_method_unchecked(target.as_ref(), get_id, ReturnType::Object, &[])
+            };
 
             let result = if env.exception_check().unwrap() {
                 let exception = env.exception_occurred().unwrap();
@@ -418,6 +1069,7 @@ impl ProxiedJavaValue {
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let apply_id = JniRegistry::get(env).function_apply;
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -430,12 +1082,14 @@ impl ProxiedJavaValue {
             let param = JSJavaProxy::new(msg)
                 .into_jobject(&context, &mut env)
                 .unwrap();
-            let call_result: errors::Result<JValueGen<JObject<'_>>> = env.call_method(
-                target.as_ref(),
-                "apply",
-                "(Ljava/lang/Object;)Ljava/lang/Object;",
-                &[jni::objects::JValueGen::Object(&param)],
-            );
+            let call_result = unsafe {
+                env.call_method_unchecked(
+                    target.as_ref(),
+                    apply_id,
+                    ReturnType::Object,
+                    &[JValue::Object(&param).as_jni()],
+                )
+            };
 
             let result = if env.exception_check().unwrap() {
                 let exception = env.exception_occurred().unwrap();
@@ -457,6 +1111,7 @@ impl ProxiedJavaValue {
         context: &JObject<'vm>,
         obj: JObject<'vm>,
     ) -> Self {
+        let apply_id = JniRegistry::get(env).bi_function_apply;
         let target = Rc::new(env.new_global_ref(obj).unwrap());
         let context = Rc::new(env.new_global_ref(context).unwrap());
         // https://github.com/jni-rs/jni-rs/issues/488#issuecomment-1699852154
@@ -472,15 +1127,14 @@ impl ProxiedJavaValue {
             let p2 = JSJavaProxy::new(v2)
                 .into_jobject(&context, &mut env)
                 .unwrap();
-            let call_result: errors::Result<JValueGen<JObject<'_>>> = env.call_method(
-                target.as_ref(),
-                "apply",
-                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
-                &[
-                    jni::objects::JValueGen::Object(&p1),
-                    jni::objects::JValueGen::Object(&p2),
-                ],
-            );
+            let call_result = unsafe {
+                env.call_method_unchecked(
+                    target.as_ref(),
+                    apply_id,
+                    ReturnType::Object,
+                    &[JValue::Object(&p1).as_jni(), JValue::Object(&p2).as_jni()],
+                )
+            };
 
             let result = if env.exception_check().unwrap() {
                 let exception = env.exception_occurred().unwrap();
@@ -496,82 +1150,28 @@ impl ProxiedJavaValue {
         ProxiedJavaValue::BiFunction(Box::new(f))
     }
 
-    /// Converts a Map entry into a pair of String and ProxiedJavaValue
-    fn from_map_entry<'vm>(
-        env: &mut JNIEnv<'vm>,
-        context: &JObject<'vm>,
-        obj: JObject<'vm>,
-    ) -> (String, Self) {
-        // Get key
-        let get_key_result = env.call_method(&obj, "getKey", "()Ljava/lang/Object;", &[]);
-        let key = get_key_result.unwrap().l().unwrap().into();
-        let key: String = env.get_string(&key).unwrap().into();
-
-        // Get value from entry
-        let get_value_result = env.call_method(&obj, "getValue", "()Ljava/lang/Object;", &[]);
-        let value = get_value_result.unwrap().l().unwrap();
-        let value: ProxiedJavaValue = ProxiedJavaValue::from_object(env, context, value);
-
-        (key, value)
+    /// Converts a Java java.util.Map into a js object
+    fn from_map<'vm>(env: &mut JNIEnv<'vm>, context: &JObject<'vm>, obj: JObject<'vm>) -> Self {
+        trace!("Copy Java Map<Object, Object> to JS object",);
+        ProxiedJavaValue::Map(JavaCollection::new(env, context, &obj))
     }
 
-    /// Iterates over all items provided by the given Java iterator, applies the for_each function and collects the result into a vector
-    fn iterator_collect<'vm, T>(
+    /// Binds a Java java.util.Map lazily to a JS Proxy object, which forwards all property accesses to the map
+    pub fn from_lazy_map<'vm>(
         env: &mut JNIEnv<'vm>,
         context: &JObject<'vm>,
-        iterator: JObject<'vm>,
-        for_each: ForEachFn<'vm, T>,
-    ) -> Vec<T> {
-        // Result of the operation -> a list of key-value pairs
-        let mut items: Vec<T> = vec![];
-        loop {
-            // Check if there is another item
-            let has_next_result = env.call_method(&iterator, "hasNext", "()Z", &[]);
-            let has_next = has_next_result.unwrap().z().unwrap();
-            if !has_next {
-                break;
-            }
-
-            // Map next item
-            let next_result = env.call_method(&iterator, "next", "()Ljava/lang/Object;", &[]);
-            let next = next_result.unwrap().l().unwrap();
-
-            let value = for_each(env, context, next);
-            items.push(value);
+        obj: JObject<'vm>,
+    ) -> Self {
+        if obj.is_null() {
+            ProxiedJavaValue::from_null()
+        } else {
+            trace!("Bind Java Map<Object, Object> lazily to JS Proxy");
+            ProxiedJavaValue::LazyMap(JavaCollection::new(env, context, &obj))
         }
-        items
-    }
-
-    /// Converts a Java java.util.Map into a js object
-    fn from_map<'vm>(env: &mut JNIEnv<'vm>, context: &JObject<'vm>, obj: JObject<'vm>) -> Self {
-        trace!("Copy Java Map<Object, Object> to JS object",);
-
-        // Iterate over all items
-
-        // Fetch the entry set
-        let entry_set_result: errors::Result<JValueGen<JObject<'_>>> =
-            env.call_method(obj, "entrySet", "()Ljava/util/Set;", &[]);
-
-        let entry_set = entry_set_result.unwrap().l().unwrap();
-
-        // Create an iterator over all results
-        let iterator_result: errors::Result<JValueGen<JObject<'_>>> =
-            env.call_method(entry_set, "iterator", "()Ljava/util/Iterator;", &[]);
-        let iterator = iterator_result.unwrap().l().unwrap();
-
-        // FIXME cache method ids for better performance
-        let items = ProxiedJavaValue::iterator_collect(
-            env,
-            context,
-            iterator,
-            Box::new(|env, context, entry| ProxiedJavaValue::from_map_entry(env, context, entry)),
-        );
-
-        ProxiedJavaValue::Map(items)
     }
 
     /// Converts a Java object to a ProxiedJavaValue. This is achieved by checking the plain Java Object with `instance of` checks for its real type, then extract all the values to a ProxiedJavaValue.
-    /// This involves a lot of call backs into the JVM and has to be optimized, especially for Iterable and Map objects.
+    /// All classes and method ids are taken from the `JniRegistry`, so no class lookups are necessary for the conversion.
     pub fn from_object<'vm>(
         env: &mut JNIEnv<'vm>,
         context: &JObject<'vm>,
@@ -581,81 +1181,151 @@ impl ProxiedJavaValue {
             trace!("Map Java null to JS null");
             return ProxiedJavaValue::Null;
         }
+        let registry = JniRegistry::get(env);
 
         // To minimize the number of calls into the JVM, the checks are roughly ordered with probability of being used (so first simple values, then collections, then functions, then not-well-supported values, then fallback)
-        if ProxiedJavaValue::is_instance_of("java/lang/Boolean", env, &obj) {
-            let raw_value = env.call_method(&obj, "booleanValue", "()Z", &[]);
+        if JniRegistry::is_instance_of(env, &obj, &registry.boolean) {
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.boolean_value,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[],
+                )
+            };
             let value = raw_value.unwrap().z().unwrap();
             trace!("Map Java Boolean to JS bool");
             ProxiedJavaValue::Bool(value)
-        } else if ProxiedJavaValue::is_instance_of("java/lang/Integer", env, &obj) {
-            let raw_value = env.call_method(&obj, "intValue", "()I", &[]);
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.integer) {
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.integer_int_value,
+                    ReturnType::Primitive(Primitive::Int),
+                    &[],
+                )
+            };
             let value = raw_value.unwrap().i().unwrap();
             trace!("Map Java Integer to JS int");
             ProxiedJavaValue::Int(value)
-        } else if ProxiedJavaValue::is_instance_of("java/lang/String", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.string) {
             let str: JString = obj.into();
             let plain: String = env.get_string(&str).unwrap().into();
             trace!("Map Java String to JS String");
             ProxiedJavaValue::String(plain)
-        } else if ProxiedJavaValue::is_instance_of("java/lang/Double", env, &obj)
-            || ProxiedJavaValue::is_instance_of("java/lang/Float", env, &obj)
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.double)
+            || JniRegistry::is_instance_of(env, &obj, &registry.float)
         {
-            let raw_value = env.call_method(&obj, "doubleValue", "()D", &[]);
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.number_double_value,
+                    ReturnType::Primitive(Primitive::Double),
+                    &[],
+                )
+            };
             let value = raw_value.unwrap().d().unwrap();
             trace!("Map Java Double / Float to JS Double",);
             ProxiedJavaValue::Double(value)
-        } else if ProxiedJavaValue::is_instance_of("java/lang/Iterable", env, &obj) {
+        } else if JniRegistry::is_instance_of_optional(env, &obj, &registry.quickjs_array) {
+            // Lazy views have to be checked before the generic collections, they are unwrapped to the original JS value
+            ProxiedJavaValue::from_js_view(
+                env,
+                context,
+                obj,
+                registry.quickjs_array_ptr.unwrap(),
+                registry.quickjs_array_ctx.unwrap(),
+            )
+        } else if JniRegistry::is_instance_of_optional(env, &obj, &registry.quickjs_object) {
+            ProxiedJavaValue::from_js_view(
+                env,
+                context,
+                obj,
+                registry.quickjs_object_ptr.unwrap(),
+                registry.quickjs_object_ctx.unwrap(),
+            )
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.iterable) {
             ProxiedJavaValue::from_iterable(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/Map", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.map) {
             ProxiedJavaValue::from_map(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of(
-            "com/github/stefanrichterhuber/quickjs/QuickJSFunction",
-            env,
-            &obj,
-        ) {
+        } else if JniRegistry::is_instance_of_optional(env, &obj, &registry.quickjs_function) {
             // First check for the special case of QuickJSFunction, because it implements both VariadicFunction and Function
             ProxiedJavaValue::from_quick_js_function(env, obj)
-        } else if ProxiedJavaValue::is_instance_of(
-            "com/github/stefanrichterhuber/quickjs/VariadicFunction",
-            env,
-            &obj,
-        ) {
+        } else if JniRegistry::is_instance_of_optional(env, &obj, &registry.variadic_function) {
             // Then check for the more generic case of VariadicFunction because it also implements Function but has an object array as argument
             ProxiedJavaValue::from_variadic_function(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/function/Consumer", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.consumer) {
             ProxiedJavaValue::from_consumer(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/function/BiConsumer", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.bi_consumer) {
             ProxiedJavaValue::from_biconsumer(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/function/BiFunction", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.bi_function) {
             ProxiedJavaValue::from_bifunction(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/function/Supplier", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.supplier) {
             ProxiedJavaValue::from_supplier(env, context, obj)
-        } else if ProxiedJavaValue::is_instance_of("java/util/function/Function", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.function) {
             ProxiedJavaValue::from_function(env, context, obj)
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.completion_stage) {
+            trace!("Map Java CompletionStage to JS Promise");
+            ProxiedJavaValue::CompletionStage(JavaCompletionStage::new(env, context, &obj))
         } else if ProxiedJavaValue::is_array(env, &obj) {
-            let array = JObjectArray::from(obj);
-            ProxiedJavaValue::from_array(env, context, array)
-        } else if ProxiedJavaValue::is_instance_of("java/math/BigInteger", env, &obj) {
+            // Primitive arrays are bulk copied into TypedArrays, all other arrays are object arrays
+            match ProxiedJavaValue::from_primitive_array(env, &obj) {
+                Some(value) => value,
+                None => {
+                    let array = JObjectArray::from(obj);
+                    ProxiedJavaValue::from_array(env, context, array)
+                }
+            }
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.byte_buffer) {
+            ProxiedJavaValue::from_byte_buffer(env, obj)
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.big_integer) {
             // Convert big integer to string -> later on bag to JS big integer
-            let raw_value = env.call_method(&obj, "longValue", "()J", &[]);
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.number_long_value,
+                    ReturnType::Primitive(Primitive::Long),
+                    &[],
+                )
+            };
             let value = raw_value.unwrap().j().unwrap();
             trace!("Map Java BigInteger to JS BigInteger",);
             ProxiedJavaValue::BigInteger(value)
-        } else if ProxiedJavaValue::is_instance_of("java/math/BigDecimal", env, &obj) {
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.big_decimal) {
             // Convert big decimal to string -> later on bag to JS big decimal
-            let raw_value = env.call_method(&obj, "toString", "()Ljava/lang/String;", &[]);
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.object_to_string,
+                    ReturnType::Object,
+                    &[],
+                )
+            };
             let str: JString = raw_value.unwrap().l().unwrap().into();
             let plain: String = env.get_string(&str).unwrap().into();
             trace!("Map Java BigDecimal to JS BigDecimal",);
             ProxiedJavaValue::BigDecimal(plain)
-        } else if ProxiedJavaValue::is_instance_of("java/lang/Long", env, &obj) {
-            let raw_value = env.call_method(&obj, "longValue", "()J", &[]);
+        } else if JniRegistry::is_instance_of(env, &obj, &registry.long) {
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.number_long_value,
+                    ReturnType::Primitive(Primitive::Long),
+                    &[],
+                )
+            };
             let value = raw_value.unwrap().j().unwrap();
             trace!("Map Java Long to JS BigInteger");
             ProxiedJavaValue::BigInteger(value)
         } else {
-            let raw_value = env.call_method(&obj, "toString", "()Ljava/lang/String;", &[]);
+            let raw_value = unsafe {
+                env.call_method_unchecked(
+                    &obj,
+                    registry.object_to_string,
+                    ReturnType::Object,
+                    &[],
+                )
+            };
             let str: JString = raw_value.unwrap().l().unwrap().into();
             let plain: String = env.get_string(&str).unwrap().into();
             trace!("Map unsupported Java type to JS by calling toString()",);
@@ -717,16 +1387,8 @@ impl<'js> IntoJs<'js> for ProxiedJavaValue {
                 let s = Value::from_function(func);
                 Ok(s)
             }
-            ProxiedJavaValue::Map(values) => {
-                let obj = rquickjs::Object::new(ctx.clone()).unwrap();
-
-                for value in values.into_iter() {
-                    obj.set(value.0.as_str(), value.1.into_js(ctx).unwrap())
-                        .unwrap();
-                }
-                let s = Value::from_object(obj);
-                Ok(s)
-            }
+            ProxiedJavaValue::Map(map) => map.map_into_js(ctx),
+            ProxiedJavaValue::LazyMap(map) => map.lazy_map_into_js(ctx),
             ProxiedJavaValue::JSFunction(ptr) => {
                 let func = ptr_to_function(ptr);
 
@@ -738,16 +1400,36 @@ impl<'js> IntoJs<'js> for ProxiedJavaValue {
                 _ = function_to_ptr(func);
                 Ok(s)
             }
-            ProxiedJavaValue::Array(mut values) => {
-                let obj = rquickjs::Array::new(ctx.clone()).unwrap();
-
-                for i in 0..values.len() {
-                    let value = values.remove(0);
-                    let value = value.into_js(ctx).unwrap();
-                    obj.set(i, value).unwrap();
-                }
+            ProxiedJavaValue::Iterable(iterable) => iterable.iterable_into_js(ctx),
+            ProxiedJavaValue::ObjectArray(array) => array.object_array_into_js(ctx),
+            // The TypedArrays take over the memory of the Vec, so there is no further copy necessary
+            ProxiedJavaValue::Int8Array(values) => {
+                rquickjs::TypedArray::<i8>::new(ctx.clone(), values)?.into_js(ctx)
+            }
+            ProxiedJavaValue::Int32Array(values) => {
+                rquickjs::TypedArray::<i32>::new(ctx.clone(), values)?.into_js(ctx)
+            }
+            ProxiedJavaValue::BigInt64Array(values) => {
+                rquickjs::TypedArray::<i64>::new(ctx.clone(), values)?.into_js(ctx)
+            }
+            ProxiedJavaValue::Float32Array(values) => {
+                rquickjs::TypedArray::<f32>::new(ctx.clone(), values)?.into_js(ctx)
+            }
+            ProxiedJavaValue::Float64Array(values) => {
+                rquickjs::TypedArray::<f64>::new(ctx.clone(), values)?.into_js(ctx)
+            }
+            ProxiedJavaValue::CompletionStage(stage) => stage.into_js(ctx),
+            ProxiedJavaValue::SharedBuffer(buffer, address, len) => {
+                shared_buffer::new_shared_array_buffer(ctx, buffer, address, len)
+            }
+            ProxiedJavaValue::JSValue(ptr) => {
+                let value = ptr_to_value(ptr);
+                // The view belongs to the same context, so only the lifetime has to be adapted
+                let s: Value<'js> = unsafe { std::mem::transmute(value.as_ref().clone()) };
 
-                Ok(Value::from_array(obj))
+                // Prevents dropping the value
+                _ = value_to_ptr(value);
+                Ok(s)
             }
             ProxiedJavaValue::VarFunction(f) => {
                 let func = Function::new::<JObject, VariadicFunction>(ctx.clone(), f).unwrap();
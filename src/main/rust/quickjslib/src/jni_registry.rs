@@ -0,0 +1,505 @@
+use std::sync::OnceLock;
+
+use jni::objects::{GlobalRef, JClass, JFieldID, JMethodID, JObject, JStaticMethodID};
+use jni::JNIEnv;
+use log::{debug, error};
+
+/// Process-wide registry of all the JNI classes, method ids and field ids used by the marshalling layer.
+/// There can only be one JavaVM per process, so the registry is initialized exactly once and then shared by all runtimes and contexts.
+static REGISTRY: OnceLock<JniRegistry> = OnceLock::new();
+
+/// Cache of JNI classes (held as `GlobalRef`s to prevent them from being unloaded) and the method / field ids used to convert values between Java and JS.
+/// Looking up classes and method ids is quite expensive (`find_class` always walks the class loader), so this is done only once.
+pub(crate) struct JniRegistry {
+    pub boolean: GlobalRef,
+    pub integer: GlobalRef,
+    pub long: GlobalRef,
+    pub double: GlobalRef,
+    pub float: GlobalRef,
+    pub string: GlobalRef,
+    pub iterable: GlobalRef,
+    pub map: GlobalRef,
+    pub consumer: GlobalRef,
+    pub bi_consumer: GlobalRef,
+    pub bi_function: GlobalRef,
+    pub supplier: GlobalRef,
+    pub function: GlobalRef,
+    pub big_integer: GlobalRef,
+    pub big_decimal: GlobalRef,
+    pub array_list: GlobalRef,
+    pub hash_map: GlobalRef,
+    /// Primitive array classes (byte[], int[], long[], float[], double[])
+    pub byte_array: GlobalRef,
+    pub int_array: GlobalRef,
+    pub long_array: GlobalRef,
+    pub float_array: GlobalRef,
+    pub double_array: GlobalRef,
+    pub byte_buffer: GlobalRef,
+    pub completable_future: GlobalRef,
+    pub completion_stage: GlobalRef,
+    /// Classes of this library. These are optional, because they might not be available if the native library is used without the Java part (e.g. in tests)
+    pub quickjs_function: Option<GlobalRef>,
+    pub variadic_function: Option<GlobalRef>,
+    pub quickjs_context: Option<GlobalRef>,
+    pub quickjs_object: Option<GlobalRef>,
+    pub quickjs_array: Option<GlobalRef>,
+
+    pub boolean_value: JMethodID,
+    pub boolean_value_of: JStaticMethodID,
+    pub integer_int_value: JMethodID,
+    pub integer_value_of: JStaticMethodID,
+    pub number_double_value: JMethodID,
+    pub number_long_value: JMethodID,
+    pub double_value_of: JStaticMethodID,
+    pub object_to_string: JMethodID,
+    pub class_is_array: JMethodID,
+    pub iterable_iterator: JMethodID,
+    pub iterator_has_next: JMethodID,
+    pub iterator_next: JMethodID,
+    pub map_entry_set: JMethodID,
+    pub map_entry_get_key: JMethodID,
+    pub map_entry_get_value: JMethodID,
+    pub map_get: JMethodID,
+    pub map_contains_key: JMethodID,
+    pub map_key_set: JMethodID,
+    pub map_put: JMethodID,
+    pub map_remove: JMethodID,
+    pub array_list_new: JMethodID,
+    pub array_list_add: JMethodID,
+    pub hash_map_new: JMethodID,
+    pub hash_map_put: JMethodID,
+    pub consumer_accept: JMethodID,
+    pub bi_consumer_accept: JMethodID,
+    pub bi_function_apply: JMethodID,
+    pub supplier_get: JMethodID,
+    pub function_apply: JMethodID,
+    pub completable_future_new: JMethodID,
+    pub completable_future_complete: JMethodID,
+    pub completable_future_complete_exceptionally: JMethodID,
+    pub variadic_function_apply: Option<JMethodID>,
+    pub quickjs_function_new: Option<JMethodID>,
+    pub quickjs_function_ptr: Option<JFieldID>,
+    pub quickjs_context_lazy_results: Option<JFieldID>,
+    pub quickjs_context_register_promise: Option<JMethodID>,
+    pub quickjs_object_new: Option<JMethodID>,
+    pub quickjs_object_ptr: Option<JFieldID>,
+    pub quickjs_object_ctx: Option<JFieldID>,
+    pub quickjs_array_new: Option<JMethodID>,
+    pub quickjs_array_ptr: Option<JFieldID>,
+    pub quickjs_array_ctx: Option<JFieldID>,
+}
+
+impl JniRegistry {
+    /// Returns the registry, initializing it on first access. The first access should happen from a thread started by Java (e.g. within a JNI call),
+    /// otherwise the classes of this library can not be resolved by the system class loader.
+    pub fn get(env: &mut JNIEnv<'_>) -> &'static JniRegistry {
+        REGISTRY.get_or_init(|| JniRegistry::new(env))
+    }
+
+    /// Converts a cached global class reference into a `JClass` usable for JNI calls
+    pub fn class(class: &GlobalRef) -> &JClass<'static> {
+        <&JClass>::from(class.as_obj())
+    }
+
+    /// Checks if the given object is an instance of the given cached class
+    pub fn is_instance_of<'vm>(env: &mut JNIEnv<'vm>, obj: &JObject<'vm>, class: &GlobalRef) -> bool {
+        env.is_instance_of(obj, JniRegistry::class(class))
+            .unwrap_or(false)
+    }
+
+    /// Checks if the given object is an instance of the given optional cached class. Missing classes never match.
+    pub fn is_instance_of_optional<'vm>(
+        env: &mut JNIEnv<'vm>,
+        obj: &JObject<'vm>,
+        class: &Option<GlobalRef>,
+    ) -> bool {
+        match class {
+            Some(class) => JniRegistry::is_instance_of(env, obj, class),
+            None => false,
+        }
+    }
+
+    fn find(env: &mut JNIEnv<'_>, name: &str) -> GlobalRef {
+        let class = env
+            .find_class(name)
+            .unwrap_or_else(|_| panic!("Failed to load the class {}", name));
+        env.new_global_ref(class).unwrap()
+    }
+
+    fn find_optional(env: &mut JNIEnv<'_>, name: &str) -> Option<GlobalRef> {
+        match env.find_class(name) {
+            Ok(class) => Some(env.new_global_ref(class).unwrap()),
+            Err(_) => {
+                // Failing to find class causes an exception -> clear it
+                env.exception_clear().unwrap();
+                error!("Unable to find class {}", name);
+                None
+            }
+        }
+    }
+
+    fn new(env: &mut JNIEnv<'_>) -> Self {
+        debug!("Initializing JNI class registry");
+
+        let boolean = JniRegistry::find(env, "java/lang/Boolean");
+        let integer = JniRegistry::find(env, "java/lang/Integer");
+        let long = JniRegistry::find(env, "java/lang/Long");
+        let double = JniRegistry::find(env, "java/lang/Double");
+        let float = JniRegistry::find(env, "java/lang/Float");
+        let string = JniRegistry::find(env, "java/lang/String");
+        let iterable = JniRegistry::find(env, "java/lang/Iterable");
+        let map = JniRegistry::find(env, "java/util/Map");
+        let consumer = JniRegistry::find(env, "java/util/function/Consumer");
+        let bi_consumer = JniRegistry::find(env, "java/util/function/BiConsumer");
+        let bi_function = JniRegistry::find(env, "java/util/function/BiFunction");
+        let supplier = JniRegistry::find(env, "java/util/function/Supplier");
+        let function = JniRegistry::find(env, "java/util/function/Function");
+        let big_integer = JniRegistry::find(env, "java/math/BigInteger");
+        let big_decimal = JniRegistry::find(env, "java/math/BigDecimal");
+        let array_list = JniRegistry::find(env, "java/util/ArrayList");
+        let hash_map = JniRegistry::find(env, "java/util/HashMap");
+        let byte_array = JniRegistry::find(env, "[B");
+        let int_array = JniRegistry::find(env, "[I");
+        let long_array = JniRegistry::find(env, "[J");
+        let float_array = JniRegistry::find(env, "[F");
+        let double_array = JniRegistry::find(env, "[D");
+        let byte_buffer = JniRegistry::find(env, "java/nio/ByteBuffer");
+        let completable_future =
+            JniRegistry::find(env, "java/util/concurrent/CompletableFuture");
+        let completion_stage = JniRegistry::find(env, "java/util/concurrent/CompletionStage");
+        let quickjs_function = JniRegistry::find_optional(
+            env,
+            "com/github/stefanrichterhuber/quickjs/QuickJSFunction",
+        );
+        let variadic_function = JniRegistry::find_optional(
+            env,
+            "com/github/stefanrichterhuber/quickjs/VariadicFunction",
+        );
+        let quickjs_context = JniRegistry::find_optional(
+            env,
+            "com/github/stefanrichterhuber/quickjs/QuickJSContext",
+        );
+        let quickjs_object = JniRegistry::find_optional(
+            env,
+            "com/github/stefanrichterhuber/quickjs/QuickJSObject",
+        );
+        let quickjs_array = JniRegistry::find_optional(
+            env,
+            "com/github/stefanrichterhuber/quickjs/QuickJSArray",
+        );
+
+        let boolean_value = env
+            .get_method_id(JniRegistry::class(&boolean), "booleanValue", "()Z")
+            .unwrap();
+        let boolean_value_of = env
+            .get_static_method_id(
+                JniRegistry::class(&boolean),
+                "valueOf",
+                "(Z)Ljava/lang/Boolean;",
+            )
+            .unwrap();
+        let integer_int_value = env
+            .get_method_id(JniRegistry::class(&integer), "intValue", "()I")
+            .unwrap();
+        let integer_value_of = env
+            .get_static_method_id(
+                JniRegistry::class(&integer),
+                "valueOf",
+                "(I)Ljava/lang/Integer;",
+            )
+            .unwrap();
+        // Double, Float, Long and BigInteger all extend Number, so the method ids of Number can be used for all of them
+        let number_double_value = env
+            .get_method_id("java/lang/Number", "doubleValue", "()D")
+            .unwrap();
+        let number_long_value = env
+            .get_method_id("java/lang/Number", "longValue", "()J")
+            .unwrap();
+        let double_value_of = env
+            .get_static_method_id(
+                JniRegistry::class(&double),
+                "valueOf",
+                "(D)Ljava/lang/Double;",
+            )
+            .unwrap();
+        let object_to_string = env
+            .get_method_id("java/lang/Object", "toString", "()Ljava/lang/String;")
+            .unwrap();
+        let class_is_array = env
+            .get_method_id("java/lang/Class", "isArray", "()Z")
+            .unwrap();
+        let iterable_iterator = env
+            .get_method_id(
+                JniRegistry::class(&iterable),
+                "iterator",
+                "()Ljava/util/Iterator;",
+            )
+            .unwrap();
+        let iterator_has_next = env
+            .get_method_id("java/util/Iterator", "hasNext", "()Z")
+            .unwrap();
+        let iterator_next = env
+            .get_method_id("java/util/Iterator", "next", "()Ljava/lang/Object;")
+            .unwrap();
+        let map_entry_set = env
+            .get_method_id(JniRegistry::class(&map), "entrySet", "()Ljava/util/Set;")
+            .unwrap();
+        let map_entry_get_key = env
+            .get_method_id("java/util/Map$Entry", "getKey", "()Ljava/lang/Object;")
+            .unwrap();
+        let map_entry_get_value = env
+            .get_method_id("java/util/Map$Entry", "getValue", "()Ljava/lang/Object;")
+            .unwrap();
+        let map_get = env
+            .get_method_id(
+                JniRegistry::class(&map),
+                "get",
+                "(Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let map_contains_key = env
+            .get_method_id(
+                JniRegistry::class(&map),
+                "containsKey",
+                "(Ljava/lang/Object;)Z",
+            )
+            .unwrap();
+        let map_key_set = env
+            .get_method_id(JniRegistry::class(&map), "keySet", "()Ljava/util/Set;")
+            .unwrap();
+        let map_put = env
+            .get_method_id(
+                JniRegistry::class(&map),
+                "put",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let map_remove = env
+            .get_method_id(
+                JniRegistry::class(&map),
+                "remove",
+                "(Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let array_list_new = env
+            .get_method_id(JniRegistry::class(&array_list), "<init>", "(I)V")
+            .unwrap();
+        let array_list_add = env
+            .get_method_id(
+                JniRegistry::class(&array_list),
+                "add",
+                "(Ljava/lang/Object;)Z",
+            )
+            .unwrap();
+        let hash_map_new = env
+            .get_method_id(JniRegistry::class(&hash_map), "<init>", "()V")
+            .unwrap();
+        let hash_map_put = env
+            .get_method_id(
+                JniRegistry::class(&hash_map),
+                "put",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let consumer_accept = env
+            .get_method_id(
+                JniRegistry::class(&consumer),
+                "accept",
+                "(Ljava/lang/Object;)V",
+            )
+            .unwrap();
+        let bi_consumer_accept = env
+            .get_method_id(
+                JniRegistry::class(&bi_consumer),
+                "accept",
+                "(Ljava/lang/Object;Ljava/lang/Object;)V",
+            )
+            .unwrap();
+        let bi_function_apply = env
+            .get_method_id(
+                JniRegistry::class(&bi_function),
+                "apply",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let supplier_get = env
+            .get_method_id(
+                JniRegistry::class(&supplier),
+                "get",
+                "()Ljava/lang/Object;",
+            )
+            .unwrap();
+        let function_apply = env
+            .get_method_id(
+                JniRegistry::class(&function),
+                "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap();
+        let completable_future_new = env
+            .get_method_id(JniRegistry::class(&completable_future), "<init>", "()V")
+            .unwrap();
+        let completable_future_complete = env
+            .get_method_id(
+                JniRegistry::class(&completable_future),
+                "complete",
+                "(Ljava/lang/Object;)Z",
+            )
+            .unwrap();
+        let completable_future_complete_exceptionally = env
+            .get_method_id(
+                JniRegistry::class(&completable_future),
+                "completeExceptionally",
+                "(Ljava/lang/Throwable;)Z",
+            )
+            .unwrap();
+        let variadic_function_apply = variadic_function.as_ref().map(|class| {
+            env.get_method_id(
+                JniRegistry::class(class),
+                "apply",
+                "([Ljava/lang/Object;)Ljava/lang/Object;",
+            )
+            .unwrap()
+        });
+        let quickjs_function_new = quickjs_function.as_ref().map(|class| {
+            env.get_method_id(
+                JniRegistry::class(class),
+                "<init>",
+                "(JLjava/lang/String;Lcom/github/stefanrichterhuber/quickjs/QuickJSContext;)V",
+            )
+            .unwrap()
+        });
+        let quickjs_function_ptr = quickjs_function.as_ref().map(|class| {
+            env.get_field_id(JniRegistry::class(class), "ptr", "J")
+                .unwrap()
+        });
+        let quickjs_context_lazy_results = quickjs_context.as_ref().map(|class| {
+            env.get_field_id(JniRegistry::class(class), "lazyResults", "Z")
+                .unwrap()
+        });
+        let quickjs_context_register_promise = quickjs_context.as_ref().map(|class| {
+            env.get_method_id(
+                JniRegistry::class(class),
+                "registerPromise",
+                "(Ljava/util/concurrent/CompletionStage;J)V",
+            )
+            .unwrap()
+        });
+        let quickjs_object_new = quickjs_object.as_ref().map(|class| {
+            env.get_method_id(
+                JniRegistry::class(class),
+                "<init>",
+                "(JLcom/github/stefanrichterhuber/quickjs/QuickJSContext;)V",
+            )
+            .unwrap()
+        });
+        let quickjs_object_ptr = quickjs_object.as_ref().map(|class| {
+            env.get_field_id(JniRegistry::class(class), "ptr", "J")
+                .unwrap()
+        });
+        let quickjs_object_ctx = quickjs_object.as_ref().map(|class| {
+            env.get_field_id(
+                JniRegistry::class(class),
+                "ctx",
+                "Lcom/github/stefanrichterhuber/quickjs/QuickJSContext;",
+            )
+            .unwrap()
+        });
+        let quickjs_array_new = quickjs_array.as_ref().map(|class| {
+            env.get_method_id(
+                JniRegistry::class(class),
+                "<init>",
+                "(JLcom/github/stefanrichterhuber/quickjs/QuickJSContext;)V",
+            )
+            .unwrap()
+        });
+        let quickjs_array_ptr = quickjs_array.as_ref().map(|class| {
+            env.get_field_id(JniRegistry::class(class), "ptr", "J")
+                .unwrap()
+        });
+        let quickjs_array_ctx = quickjs_array.as_ref().map(|class| {
+            env.get_field_id(
+                JniRegistry::class(class),
+                "ctx",
+                "Lcom/github/stefanrichterhuber/quickjs/QuickJSContext;",
+            )
+            .unwrap()
+        });
+
+        JniRegistry {
+            boolean,
+            integer,
+            long,
+            double,
+            float,
+            string,
+            iterable,
+            map,
+            consumer,
+            bi_consumer,
+            bi_function,
+            supplier,
+            function,
+            big_integer,
+            big_decimal,
+            array_list,
+            hash_map,
+            byte_array,
+            int_array,
+            long_array,
+            float_array,
+            double_array,
+            byte_buffer,
+            completable_future,
+            completion_stage,
+            quickjs_function,
+            variadic_function,
+            quickjs_context,
+            quickjs_object,
+            quickjs_array,
+            boolean_value,
+            boolean_value_of,
+            integer_int_value,
+            integer_value_of,
+            number_double_value,
+            number_long_value,
+            double_value_of,
+            object_to_string,
+            class_is_array,
+            iterable_iterator,
+            iterator_has_next,
+            iterator_next,
+            map_entry_set,
+            map_entry_get_key,
+            map_entry_get_value,
+            map_get,
+            map_contains_key,
+            map_key_set,
+            map_put,
+            map_remove,
+            array_list_new,
+            array_list_add,
+            hash_map_new,
+            hash_map_put,
+            consumer_accept,
+            bi_consumer_accept,
+            bi_function_apply,
+            supplier_get,
+            function_apply,
+            completable_future_new,
+            completable_future_complete,
+            completable_future_complete_exceptionally,
+            variadic_function_apply,
+            quickjs_function_new,
+            quickjs_function_ptr,
+            quickjs_context_lazy_results,
+            quickjs_context_register_promise,
+            quickjs_object_new,
+            quickjs_object_ptr,
+            quickjs_object_ctx,
+            quickjs_array_new,
+            quickjs_array_ptr,
+            quickjs_array_ctx,
+        }
+    }
+}
@@ -1,9 +1,60 @@
-use jni::objects::JValue;
+use std::borrow::Cow;
+
+use jni::objects::{GlobalRef, JMethodID, JValue};
+use jni::signature::Primitive;
 use jni::{objects::JObject, signature::ReturnType, sys::jlong, JNIEnv};
 use log::error;
 use log::trace;
 use rquickjs::atom::PredefinedAtom;
-use rquickjs::{FromJs, Value};
+use rquickjs::{FromJs, Object, Value};
+
+use crate::jni_registry::JniRegistry;
+use crate::promise;
+use crate::js_view::{ptr_to_value, value_to_ptr};
+use crate::shared_buffer;
+
+/// Reinterprets the bytes of a JS TypedArray or ArrayBuffer as a slice of primitive values. Detached buffers result in an empty slice.
+/// QuickJS only aligns the offset of a TypedArray within its buffer, not the buffer itself: a buffer shared with a Java ByteBuffer
+/// (e.g. a slice) can start at any address. Misaligned data is therefore copied with unaligned reads instead of being reinterpreted.
+fn bytes_as_slice<T: Copy>(bytes: Option<&[u8]>) -> Cow<'_, [T]> {
+    match bytes {
+        Some(bytes) if !bytes.is_empty() => {
+            let ptr = bytes.as_ptr() as *const T;
+            let len = bytes.len() / std::mem::size_of::<T>();
+            if ptr.align_offset(std::mem::align_of::<T>()) == 0 {
+                Cow::Borrowed(unsafe { std::slice::from_raw_parts(ptr, len) })
+            } else {
+                trace!("Copy misaligned TypedArray data");
+                Cow::Owned((0..len).map(|i| unsafe { ptr.add(i).read_unaligned() }).collect())
+            }
+        }
+        _ => Cow::Borrowed(&[]),
+    }
+}
+
+/// Copies the bytes viewed by a Uint8ClampedArray or DataView. rquickjs has no typed access to them, so the viewed range is resolved
+/// from their `buffer`, `byteOffset` and `byteLength` properties. Detached buffers result in an empty Vec, other objects in `None`.
+fn viewed_bytes(obj: &Object<'_>) -> Option<Vec<i8>> {
+    let globals = obj.ctx().globals();
+    let is_view = ["Uint8ClampedArray", "DataView"].iter().any(|name| {
+        globals
+            .get::<_, Object>(*name)
+            .map(|class| obj.is_instance_of(class))
+            .unwrap_or(false)
+    });
+    if !is_view {
+        return None;
+    }
+    let buffer: Object = obj.get("buffer").ok()?;
+    let bytes = match buffer.as_array_buffer().and_then(|b| b.as_bytes()) {
+        Some(bytes) => bytes,
+        None => return Some(Vec::new()),
+    };
+    let offset = obj.get::<_, f64>("byteOffset").ok()? as usize;
+    let len = obj.get::<_, f64>("byteLength").ok()? as usize;
+    let bytes = bytes.get(offset..offset + len).unwrap_or(&[]);
+    Some(bytes.iter().map(|b| *b as i8).collect())
+}
 
 /// This proxy assist in converting JS values to Java values
 pub struct JSJavaProxy<'js> {
@@ -30,6 +81,8 @@ impl<'js, 'vm> JSJavaProxy<'js> {
 
         env: &mut JNIEnv<'vm>,
     ) -> Option<JObject<'vm>> {
+        let registry = JniRegistry::get(env);
+
         if self.value.is_null() {
             trace!("Map JS null to Java null");
             Some(JObject::null())
@@ -37,20 +90,28 @@ impl<'js, 'vm> JSJavaProxy<'js> {
             trace!("Map JS undefined to Java null");
             Some(JObject::null())
         } else if self.value.is_array() {
+            if JSJavaProxy::lazy_results(context, env) {
+                trace!("Map JS array to Java com.github.stefanrichterhuber.quickjs.QuickJSArray");
+                return JSJavaProxy::into_view(
+                    self.value,
+                    &registry.quickjs_array,
+                    registry.quickjs_array_new,
+                    context,
+                    env,
+                );
+            }
             trace!("Map JS array to Java java.util.ArrayList",);
             let array = self.value.as_array().unwrap();
             let len = array.len() as i32;
 
-            let list_class = env
-                .find_class("java/util/ArrayList")
-                .expect("Failed to load the target class");
-            let list = env
-                .new_object(list_class, "(I)V", &[jni::objects::JValueGen::Int(len)])
-                .unwrap();
-
-            let add_id = env
-                .get_method_id("java/util/ArrayList", "add", "(Ljava/lang/Object;)Z")
-                .unwrap();
+            let list = unsafe {
+                env.new_object_unchecked(
+                    JniRegistry::class(&registry.array_list),
+                    registry.array_list_new,
+                    &[JValue::Int(len).as_jni()],
+                )
+            }
+            .unwrap();
 
             for value in array.iter::<JSJavaProxy>() {
                 let value = value.unwrap();
@@ -60,8 +121,8 @@ impl<'js, 'vm> JSJavaProxy<'js> {
                     unsafe {
                         env.call_method_unchecked(
                             &list,
-                            add_id,
-                            ReturnType::Primitive(jni::signature::Primitive::Boolean),
+                            registry.array_list_add,
+                            ReturnType::Primitive(Primitive::Boolean),
                             &[JValue::Object(&v).as_jni()],
                         )
                         .unwrap()
@@ -83,19 +144,22 @@ impl<'js, 'vm> JSJavaProxy<'js> {
             let func = Box::new(f);
             let ptr = Box::into_raw(func) as jlong;
 
-            let js_function_class = env
-                .find_class("com/github/stefanrichterhuber/quickjs/QuickJSFunction")
-                .expect("Failed to load the target class");
-
-            let result = env.new_object(
-                js_function_class,
-                "(JLjava/lang/String;Lcom/github/stefanrichterhuber/quickjs/QuickJSContext;)V",
-                &[
-                    jni::objects::JValueGen::Long(ptr),
-                    jni::objects::JValueGen::Object(&function_name),
-                    jni::objects::JValueGen::Object(context),
-                ],
-            );
+            let result = unsafe {
+                env.new_object_unchecked(
+                    JniRegistry::class(
+                        registry
+                            .quickjs_function
+                            .as_ref()
+                            .expect("Failed to load the target class"),
+                    ),
+                    registry.quickjs_function_new.unwrap(),
+                    &[
+                        JValue::Long(ptr).as_jni(),
+                        JValue::Object(&function_name).as_jni(),
+                        JValue::Object(context).as_jni(),
+                    ],
+                )
+            };
 
             match result {
                 Ok(result) => {
@@ -109,23 +173,37 @@ impl<'js, 'vm> JSJavaProxy<'js> {
                 }
             }
         } else if self.value.is_object() {
-            trace!("Map JS object to Java java.util.HashMap",);
             let obj = self.value.as_object().unwrap();
 
-            let hash_map_class = env
-                .find_class("java/util/HashMap")
-                .expect("Failed to load the target class");
+            if let Some(array) = JSJavaProxy::typed_array_into_jobject(obj, env) {
+                return Some(array);
+            }
+
+            if promise::is_promise(obj) {
+                return promise::promise_into_jobject(obj, context, env);
+            }
 
-            let hash_map = env.new_object(hash_map_class, "()V", &[]).unwrap();
+            if JSJavaProxy::lazy_results(context, env) {
+                trace!("Map JS object to Java com.github.stefanrichterhuber.quickjs.QuickJSObject");
+                return JSJavaProxy::into_view(
+                    self.value,
+                    &registry.quickjs_object,
+                    registry.quickjs_object_new,
+                    context,
+                    env,
+                );
+            }
+
+            trace!("Map JS object to Java java.util.HashMap",);
 
-            // Determines the method id of the Map.put(K, V) method for better performance
-            let put_id = env
-                .get_method_id(
-                    "java/util/HashMap",
-                    "put",
-                    "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+            let hash_map = unsafe {
+                env.new_object_unchecked(
+                    JniRegistry::class(&registry.hash_map),
+                    registry.hash_map_new,
+                    &[],
                 )
-                .unwrap();
+            }
+            .unwrap();
 
             for v in obj.keys() {
                 let key: String = v.unwrap();
@@ -137,7 +215,7 @@ impl<'js, 'vm> JSJavaProxy<'js> {
                     unsafe {
                         env.call_method_unchecked(
                             &hash_map,
-                            put_id,
+                            registry.hash_map_put,
                             ReturnType::Object,
                             &[JValue::Object(&k).as_jni(), JValue::Object(&v).as_jni()],
                         )
@@ -150,34 +228,30 @@ impl<'js, 'vm> JSJavaProxy<'js> {
             trace!("Map JS float to Java java.lang.Double",);
 
             let value = self.value.as_float().unwrap();
-            let class = env
-                .find_class("java/lang/Double")
-                .expect("Failed to load the target class");
-            let result = env
-                .call_static_method(
-                    class,
-                    "valueOf",
-                    "(D)Ljava/lang/Double;",
-                    &[jni::objects::JValueGen::Double(value)],
+            let result = unsafe {
+                env.call_static_method_unchecked(
+                    JniRegistry::class(&registry.double),
+                    registry.double_value_of,
+                    ReturnType::Object,
+                    &[JValue::Double(value).as_jni()],
                 )
-                .expect("Failed to create Integer object from value");
+            }
+            .expect("Failed to create Double object from value");
             let object = result.l().unwrap();
             return Some(object);
         } else if self.value.is_int() {
             trace!("Map JS int to Java java.lang.Integer",);
 
             let value = self.value.as_int().unwrap();
-            let class = env
-                .find_class("java/lang/Integer")
-                .expect("Failed to load the target class");
-            let result = env
-                .call_static_method(
-                    class,
-                    "valueOf",
-                    "(I)Ljava/lang/Integer;",
-                    &[jni::objects::JValueGen::Int(value)],
+            let result = unsafe {
+                env.call_static_method_unchecked(
+                    JniRegistry::class(&registry.integer),
+                    registry.integer_value_of,
+                    ReturnType::Object,
+                    &[JValue::Int(value).as_jni()],
                 )
-                .expect("Failed to create Integer object from value");
+            }
+            .expect("Failed to create Integer object from value");
             let object = result.l().unwrap();
             return Some(object);
         } else if self.value.is_string() {
@@ -189,13 +263,15 @@ impl<'js, 'vm> JSJavaProxy<'js> {
         } else if self.value.is_bool() {
             trace!("Map JS bool to Java java.lang.Boolean",);
             let value = self.value.as_bool().unwrap();
-            let class = env
-                .find_class("java/lang/Boolean")
-                .expect("Failed to load the target class");
-            let field = if value { "TRUE" } else { "FALSE" };
-            let result = env
-                .get_static_field(class, field, "Ljava/lang/Boolean;")
-                .unwrap();
+            let result = unsafe {
+                env.call_static_method_unchecked(
+                    JniRegistry::class(&registry.boolean),
+                    registry.boolean_value_of,
+                    ReturnType::Object,
+                    &[JValue::Bool(value as u8).as_jni()],
+                )
+            }
+            .expect("Failed to create Boolean object from value");
 
             let object = result.l().unwrap();
             return Some(object);
@@ -204,4 +280,126 @@ impl<'js, 'vm> JSJavaProxy<'js> {
             return None;
         }
     }
+
+    /// Copies the content of a JS TypedArray or ArrayBuffer with a single bulk copy into a new Java primitive array. Unsigned TypedArrays are mapped to the signed Java array of the same width.
+    /// Returns `None` if the object is neither a TypedArray nor an ArrayBuffer.
+    fn typed_array_into_jobject(obj: &Object<'js>, env: &mut JNIEnv<'vm>) -> Option<JObject<'vm>> {
+        // ArrayBuffers backed by a shared Java ByteBuffer return as the original ByteBuffer
+        if let Some(shared) = obj
+            .as_array_buffer()
+            .and_then(|buffer| buffer.as_bytes())
+            .and_then(|bytes| shared_buffer::shared_buffer_at(bytes.as_ptr() as usize))
+        {
+            trace!("Map JS ArrayBuffer to shared Java java.nio.ByteBuffer");
+            return Some(env.new_local_ref(shared.as_obj()).unwrap());
+        }
+
+        if let Some(array) = obj.as_typed_array::<f64>() {
+            trace!("Map JS Float64Array to Java double[]");
+            let values = bytes_as_slice::<f64>(array.as_bytes());
+            let result = env.new_double_array(values.len() as i32).unwrap();
+            env.set_double_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(bytes) = obj
+            .as_typed_array::<i32>()
+            .map(|a| a.as_bytes())
+            .or_else(|| obj.as_typed_array::<u32>().map(|a| a.as_bytes()))
+        {
+            trace!("Map JS Int32Array / Uint32Array to Java int[]");
+            let values = bytes_as_slice::<i32>(bytes);
+            let result = env.new_int_array(values.len() as i32).unwrap();
+            env.set_int_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(bytes) = obj
+            .as_typed_array::<i8>()
+            .map(|a| a.as_bytes())
+            .or_else(|| obj.as_typed_array::<u8>().map(|a| a.as_bytes()))
+            .or_else(|| obj.as_array_buffer().map(|a| a.as_bytes()))
+        {
+            trace!("Map JS Int8Array / Uint8Array / ArrayBuffer to Java byte[]");
+            let values = bytes_as_slice::<i8>(bytes);
+            let result = env.new_byte_array(values.len() as i32).unwrap();
+            env.set_byte_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(bytes) = obj
+            .as_typed_array::<i16>()
+            .map(|a| a.as_bytes())
+            .or_else(|| obj.as_typed_array::<u16>().map(|a| a.as_bytes()))
+        {
+            trace!("Map JS Int16Array / Uint16Array to Java short[]");
+            let values = bytes_as_slice::<i16>(bytes);
+            let result = env.new_short_array(values.len() as i32).unwrap();
+            env.set_short_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(array) = obj.as_typed_array::<f32>() {
+            trace!("Map JS Float32Array to Java float[]");
+            let values = bytes_as_slice::<f32>(array.as_bytes());
+            let result = env.new_float_array(values.len() as i32).unwrap();
+            env.set_float_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(bytes) = obj
+            .as_typed_array::<i64>()
+            .map(|a| a.as_bytes())
+            .or_else(|| obj.as_typed_array::<u64>().map(|a| a.as_bytes()))
+        {
+            trace!("Map JS BigInt64Array / BigUint64Array to Java long[]");
+            let values = bytes_as_slice::<i64>(bytes);
+            let result = env.new_long_array(values.len() as i32).unwrap();
+            env.set_long_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else if let Some(values) = viewed_bytes(obj) {
+            trace!("Map JS Uint8ClampedArray / DataView to Java byte[]");
+            let result = env.new_byte_array(values.len() as i32).unwrap();
+            env.set_byte_array_region(&result, 0, &values).unwrap();
+            Some(result.into())
+        } else {
+            None
+        }
+    }
+
+    /// Checks if the given QuickJSContext requests lazy views instead of copies for JS objects and arrays
+    fn lazy_results(context: &JObject<'vm>, env: &mut JNIEnv<'vm>) -> bool {
+        match JniRegistry::get(env).quickjs_context_lazy_results {
+            Some(field_id) if !context.is_null() => {
+                let lazy_results = unsafe {
+                    env.get_field_unchecked(
+                        context,
+                        field_id,
+                        ReturnType::Primitive(Primitive::Boolean),
+                    )
+                };
+                lazy_results.unwrap().z().unwrap()
+            }
+            _ => false,
+        }
+    }
+
+    /// Wraps a JS object or array into a lazy Java view (QuickJSObject or QuickJSArray). The view holds the JS value until the owning context is closed.
+    fn into_view(
+        value: Value<'js>,
+        class: &Option<GlobalRef>,
+        constructor: Option<JMethodID>,
+        context: &JObject<'vm>,
+        env: &mut JNIEnv<'vm>,
+    ) -> Option<JObject<'vm>> {
+        let ptr = value_to_ptr(Box::new(value));
+
+        let result = unsafe {
+            env.new_object_unchecked(
+                JniRegistry::class(class.as_ref().expect("Failed to load the target class")),
+                constructor.unwrap(),
+                &[JValue::Long(ptr).as_jni(), JValue::Object(context).as_jni()],
+            )
+        };
+
+        match result {
+            Ok(result) => Some(result),
+            Err(e) => {
+                // Release the value again, since no view took ownership of it
+                drop(ptr_to_value(ptr));
+                error!("Failed to create a new object: {}", e);
+                None
+            }
+        }
+    }
 }
@@ -0,0 +1,270 @@
+use jni::{
+    objects::{JObject, JObjectArray, JString},
+    sys::{jboolean, jint, jlong},
+    JNIEnv,
+};
+use log::trace;
+use rquickjs::Value;
+
+use crate::context::handle_exception;
+use crate::java_js_proxy::ProxiedJavaValue;
+use crate::jni_registry::JniRegistry;
+use crate::js_java_proxy::JSJavaProxy;
+use crate::with_locale;
+
+/// Converts a raw pointer to a JS value back to a Box<Value>.
+pub(crate) fn ptr_to_value(value_ptr: jlong) -> Box<Value<'static>> {
+    unsafe { Box::from_raw(value_ptr as *mut Value) }
+}
+
+/// Converts a Box<Value> to a raw pointer.
+pub(crate) fn value_to_ptr(value: Box<Value>) -> jlong {
+    Box::into_raw(value) as jlong
+}
+
+// Property accesses can call getters, setters and proxy traps, i.e. arbitrary JS. Like any other JS called from Java they run with the
+// default locale and are bracketed by the runtime limits on the Java side.
+
+// ---------------------- com.github.stefanrichterhuber.quickjs.QuickJSObject
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.closeObject(long ptr)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_closeObject<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+) {
+    trace!("Closed QuickJSObject with id {}", value_ptr);
+    let value = ptr_to_value(value_ptr);
+    drop(value);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.getProperty(long, QuickJSContext, String)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_getProperty<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    key: JString<'a>,
+) -> JObject<'a> {
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+    let value = ptr_to_value(value_ptr);
+    let obj = value.as_object().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    let s: Result<JSJavaProxy, _> = locale.with(|| obj.get(key_string.as_str()));
+    let result = match s {
+        Ok(s) => s.into_jobject(&context, &mut _env).unwrap(),
+        Err(e) => {
+            handle_exception(e, value.ctx(), &context, &mut _env);
+            JObject::null()
+        }
+    };
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.hasProperty(long, QuickJSContext, String)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_hasProperty<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    key: JString<'a>,
+) -> jboolean {
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+    let value = ptr_to_value(value_ptr);
+    let obj = value.as_object().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    let result = match locale.with(|| obj.contains_key(key_string.as_str())) {
+        Ok(b) => b as jboolean,
+        Err(e) => {
+            handle_exception(e, value.ctx(), &context, &mut _env);
+            0
+        }
+    };
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.setProperty(long, QuickJSContext, String, Object)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_setProperty<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    key: JString<'a>,
+    property: JObject<'a>,
+) {
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+    let property = ProxiedJavaValue::from_object(&mut _env, &context, property);
+    let value = ptr_to_value(value_ptr);
+    let obj = value.as_object().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    if let Err(e) = locale.with(|| obj.set(key_string.as_str(), property)) {
+        handle_exception(e, value.ctx(), &context, &mut _env);
+    }
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.deleteProperty(long, QuickJSContext, String)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_deleteProperty<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    key: JString<'a>,
+) {
+    let key_string: String = _env
+        .get_string(&key)
+        .expect("Couldn't get java string!")
+        .into();
+    let value = ptr_to_value(value_ptr);
+    let obj = value.as_object().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    if let Err(e) = locale.with(|| obj.remove(key_string.as_str())) {
+        handle_exception(e, value.ctx(), &context, &mut _env);
+    }
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSObject.getKeys(long, QuickJSContext)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSObject_getKeys<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+) -> JObjectArray<'a> {
+    let value = ptr_to_value(value_ptr);
+    let obj = value.as_object().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    let keys: Result<Vec<String>, _> = locale.with(|| obj.keys::<String>().collect());
+    let result = match keys {
+        Ok(keys) => {
+            let string_class = JniRegistry::class(&JniRegistry::get(&mut _env).string);
+            let array = _env
+                .new_object_array(keys.len() as i32, string_class, JObject::null())
+                .unwrap();
+            for (i, key) in keys.iter().enumerate() {
+                let key = _env.new_string(key).unwrap();
+                _env.set_object_array_element(&array, i as i32, &key)
+                    .unwrap();
+                _env.delete_local_ref(key).unwrap();
+            }
+            array
+        }
+        Err(e) => {
+            handle_exception(e, value.ctx(), &context, &mut _env);
+            JObjectArray::from(JObject::null())
+        }
+    };
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+    result
+}
+
+// ---------------------- com.github.stefanrichterhuber.quickjs.QuickJSArray
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSArray.closeArray(long ptr)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSArray_closeArray<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+) {
+    trace!("Closed QuickJSArray with id {}", value_ptr);
+    let value = ptr_to_value(value_ptr);
+    drop(value);
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSArray.getLength(long)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSArray_getLength<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+) -> jint {
+    let value = ptr_to_value(value_ptr);
+    let result = value.as_array().unwrap().len() as jint;
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSArray.getElement(long, QuickJSContext, int)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSArray_getElement<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    index: jint,
+) -> JObject<'a> {
+    let value = ptr_to_value(value_ptr);
+    let array = value.as_array().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    let s: Result<JSJavaProxy, _> = locale.with(|| array.get(index as usize));
+    let result = match s {
+        Ok(s) => s.into_jobject(&context, &mut _env).unwrap(),
+        Err(e) => {
+            handle_exception(e, value.ctx(), &context, &mut _env);
+            JObject::null()
+        }
+    };
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSArray.setElement(long, QuickJSContext, int, Object)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSArray_setElement<'a>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    value_ptr: jlong,
+    context: JObject<'a>,
+    index: jint,
+    element: JObject<'a>,
+) {
+    let element = ProxiedJavaValue::from_object(&mut _env, &context, element);
+    let value = ptr_to_value(value_ptr);
+    let array = value.as_array().unwrap();
+
+    let locale = with_locale::TemporaryLocale::new_default();
+    if let Err(e) = locale.with(|| array.set(index as usize, element)) {
+        handle_exception(e, value.ctx(), &context, &mut _env);
+    }
+
+    // Prevents dropping the value
+    _ = value_to_ptr(value);
+}
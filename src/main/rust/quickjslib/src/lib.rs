@@ -4,7 +4,13 @@
 
 pub mod context;
 pub mod foreign_function;
+mod interrupt;
 mod java_js_proxy;
+mod jni_registry;
 mod js_java_proxy;
+mod js_view;
+mod promise;
 pub mod runtime;
+mod script;
+mod shared_buffer;
 mod with_locale;
@@ -0,0 +1,218 @@
+use std::rc::Rc;
+
+use jni::objects::{GlobalRef, JObject, JValue};
+use jni::signature::{Primitive, ReturnType};
+use jni::sys::jlong;
+use jni::JNIEnv;
+use log::{error, trace};
+use rquickjs::function::{IntoJsFunc, ParamRequirement, This};
+use rquickjs::{qjs, Ctx, Error, Exception, Function, Object, Value};
+
+use crate::context::handle_exception;
+use crate::jni_registry::JniRegistry;
+use crate::js_java_proxy::JSJavaProxy;
+
+/// Checks if the given JS object is a Promise
+pub(crate) fn is_promise(obj: &Object<'_>) -> bool {
+    // JS_PromiseState returns -1 for all objects which are not a Promise
+    let state = unsafe { qjs::JS_PromiseState(obj.ctx().as_raw().as_ptr(), obj.as_raw()) };
+    (state as i32) >= 0
+}
+
+/// Maps a JS Promise to a new java.util.concurrent.CompletableFuture. The future is completed when the promise is settled, which
+/// requires the pending jobs of the runtime to be executed.
+/// - `context` Instance of `com.github.stefanrichterhuber.quickjs.QuickJSContext`, the java object managing the js context.
+pub(crate) fn promise_into_jobject<'js, 'vm>(
+    promise: &Object<'js>,
+    context: &JObject<'vm>,
+    env: &mut JNIEnv<'vm>,
+) -> Option<JObject<'vm>> {
+    let registry = JniRegistry::get(env);
+    let future_object = unsafe {
+        env.new_object_unchecked(
+            JniRegistry::class(&registry.completable_future),
+            registry.completable_future_new,
+            &[],
+        )
+    }
+    .unwrap();
+
+    let future = Rc::new(env.new_global_ref(&future_object).unwrap());
+    let context = Rc::new(env.new_global_ref(context).unwrap());
+    let on_fulfilled = PromiseReaction {
+        rejected: false,
+        future: future.clone(),
+        context: context.clone(),
+        vm: env.get_java_vm().unwrap(),
+    };
+    let on_rejected = PromiseReaction {
+        rejected: true,
+        future,
+        context,
+        vm: env.get_java_vm().unwrap(),
+    };
+
+    let ctx = promise.ctx();
+    let result = (|| {
+        let on_fulfilled = Function::new::<JObject, _>(ctx.clone(), on_fulfilled)?;
+        let on_rejected = Function::new::<JObject, _>(ctx.clone(), on_rejected)?;
+        let then: Function = promise.get("then")?;
+        then.call::<_, Value>((This(promise.clone()), on_fulfilled, on_rejected))
+    })();
+
+    match result {
+        Ok(_) => {
+            trace!("Map JS Promise to Java java.util.concurrent.CompletableFuture");
+            Some(future_object)
+        }
+        Err(e) => {
+            error!("Failed to subscribe to JS Promise: {}", e);
+            None
+        }
+    }
+}
+
+/// JS function called when a Promise mapped to a Java CompletableFuture is settled. Completes the future with the (converted) value
+/// or, if the promise was rejected, exceptionally with a QuickJSScriptException.
+struct PromiseReaction {
+    rejected: bool,
+    future: Rc<GlobalRef>,
+    context: Rc<GlobalRef>,
+    vm: jni::JavaVM,
+}
+
+impl<'js, P> IntoJsFunc<'js, P> for PromiseReaction {
+    fn param_requirements() -> ParamRequirement {
+        // Called with the value or the reason of the settled promise
+        ParamRequirement::any()
+    }
+
+    fn call<'a>(&self, params: rquickjs::function::Params<'a, 'js>) -> rquickjs::Result<Value<'js>> {
+        let ctx = params.ctx();
+        let mut env = self.vm.get_env().unwrap();
+        let registry = JniRegistry::get(&mut env);
+        let value = params
+            .arg(0)
+            .unwrap_or_else(|| Value::new_undefined(ctx.clone()));
+
+        if self.rejected {
+            trace!("JS Promise rejected, completing java.util.concurrent.CompletableFuture exceptionally");
+            // Reuse the mapping of JS exceptions to QuickJSScriptException
+            let _ = ctx.throw(value);
+            handle_exception(Error::Exception, ctx, self.context.as_obj(), &mut env);
+            let exception = env.exception_occurred().unwrap();
+            env.exception_clear().unwrap();
+
+            let method_id = registry.completable_future_complete_exceptionally;
+            let _ = unsafe {
+                env.call_method_unchecked(
+                    self.future.as_obj(),
+                    method_id,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[JValue::Object(&exception).as_jni()],
+                )
+            };
+        } else {
+            trace!("JS Promise fulfilled, completing java.util.concurrent.CompletableFuture");
+            let result = JSJavaProxy::new(value)
+                .into_jobject(self.context.as_obj(), &mut env)
+                .unwrap_or(JObject::null());
+
+            let method_id = registry.completable_future_complete;
+            let _ = unsafe {
+                env.call_method_unchecked(
+                    self.future.as_obj(),
+                    method_id,
+                    ReturnType::Primitive(Primitive::Boolean),
+                    &[JValue::Object(&result).as_jni()],
+                )
+            };
+        }
+        // Exceptions thrown while completing the future must not leak into JS
+        if env.exception_check().unwrap() {
+            error!("Failed to complete java.util.concurrent.CompletableFuture of JS Promise");
+            env.exception_clear().unwrap();
+        }
+        Ok(Value::new_undefined(ctx.clone()))
+    }
+}
+
+/// Resolving functions of a JS Promise created for a Java CompletionStage. They are kept by the Java QuickJSContext until the stage is completed.
+pub(crate) struct PendingPromise {
+    pub resolve: Function<'static>,
+    pub reject: Function<'static>,
+}
+
+/// Converts a raw pointer back to a Box<PendingPromise>
+pub(crate) fn ptr_to_pending_promise(ptr: jlong) -> Box<PendingPromise> {
+    unsafe { Box::from_raw(ptr as *mut PendingPromise) }
+}
+
+/// Java java.util.concurrent.CompletionStage returned to JS. It is mapped to a new JS Promise, which is settled by the Java QuickJSContext
+/// (within the pending jobs of the runtime) when the stage completes.
+pub struct JavaCompletionStage {
+    stage: GlobalRef,
+    context: GlobalRef,
+    vm: jni::JavaVM,
+}
+
+impl JavaCompletionStage {
+    /// Creates a new JavaCompletionStage
+    /// * `context` - A java object of type com.github.stefanrichterhuber.quickjs.QuickJSContext
+    /// * `stage` - The java.util.concurrent.CompletionStage
+    pub(crate) fn new<'vm>(env: &mut JNIEnv<'vm>, context: &JObject<'vm>, stage: &JObject<'vm>) -> Self {
+        JavaCompletionStage {
+            stage: env.new_global_ref(stage).unwrap(),
+            context: env.new_global_ref(context).unwrap(),
+            vm: env.get_java_vm().unwrap(),
+        }
+    }
+
+    /// Creates a new pending JS Promise and registers its resolving functions with the Java QuickJSContext
+    pub(crate) fn into_js<'js>(self, ctx: &Ctx<'js>) -> rquickjs::Result<Value<'js>> {
+        let mut resolving_functions: [qjs::JSValue; 2] = unsafe { std::mem::zeroed() };
+        let raw = unsafe {
+            qjs::JS_NewPromiseCapability(ctx.as_raw().as_ptr(), resolving_functions.as_mut_ptr())
+        };
+        if unsafe { qjs::JS_IsException(raw) } {
+            return Err(Error::Exception);
+        }
+        let promise = unsafe { Value::from_raw(ctx.clone(), raw) };
+        let resolve: Function = unsafe { Value::from_raw(ctx.clone(), resolving_functions[0]) }.get()?;
+        let reject: Function = unsafe { Value::from_raw(ctx.clone(), resolving_functions[1]) }.get()?;
+
+        // The functions are only called with a Ctx of the same context, so only the lifetime has to be adapted
+        let pending = Box::new(PendingPromise {
+            resolve: unsafe { std::mem::transmute(resolve) },
+            reject: unsafe { std::mem::transmute(reject) },
+        });
+        let handle = Box::into_raw(pending) as jlong;
+
+        let mut env = self.vm.get_env().unwrap();
+        let method_id = JniRegistry::get(&mut env)
+            .quickjs_context_register_promise
+            .expect("QuickJSContext not available");
+        let _ = unsafe {
+            env.call_method_unchecked(
+                self.context.as_obj(),
+                method_id,
+                ReturnType::Primitive(Primitive::Void),
+                &[
+                    JValue::Object(self.stage.as_obj()).as_jni(),
+                    JValue::Long(handle).as_jni(),
+                ],
+            )
+        };
+        if env.exception_check().unwrap() {
+            error!("Failed to register JS Promise for java.util.concurrent.CompletionStage");
+            env.exception_clear().unwrap();
+            drop(ptr_to_pending_promise(handle));
+            return Err(Exception::throw_internal(
+                ctx,
+                "Failed to register JS Promise for java.util.concurrent.CompletionStage",
+            ));
+        }
+        trace!("Map Java java.util.concurrent.CompletionStage to JS Promise");
+        Ok(promise)
+    }
+}
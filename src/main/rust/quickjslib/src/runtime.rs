@@ -1,13 +1,15 @@
-use std::rc::Rc;
-
 use jni::{
-    objects::{JObject, JValue},
+    objects::{JLongArray, JObject, JString, JValue},
     signature::ReturnType,
-    sys::{jint, jlong},
+    sys::{jboolean, jint, jlong},
     JNIEnv,
 };
-use log::{debug, Level, LevelFilter};
-use rquickjs::Runtime;
+use log::{debug, trace, Level, LevelFilter};
+use rquickjs::{qjs, Context, Error, Runtime};
+
+use crate::context::handle_exception;
+use crate::jni_registry::JniRegistry;
+use crate::script;
 
 // ---------------------- com.github.stefanrichterhuber.quickjs.QuickJSRuntime
 /// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.createRuntime()
@@ -20,36 +22,12 @@ pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime
 ) -> jlong {
     debug!("Created new QuickJS runtime");
 
-    let runtime = Runtime::new().unwrap();
-
-    // Configure callback to runtime to allow java to interrupt running JS script
-    let target = Rc::new(_env.new_global_ref(_obj).unwrap());
-    let js_interrupt_id = _env
-        .get_method_id(
-            "com/github/stefanrichterhuber/quickjs/QuickJSRuntime",
-            "jsInterrupt",
-            "()Z",
-        )
-        .unwrap();
-    let vm = _env.get_java_vm().unwrap();
-
-    let handler = move || {
-        let mut env = vm.get_env().unwrap();
-
-        let result = unsafe {
-            env.call_method_unchecked(
-                target.as_ref(),
-                js_interrupt_id,
-                ReturnType::Primitive(jni::signature::Primitive::Boolean),
-                &[],
-            )
-            .unwrap()
-        };
-        result.z().unwrap()
-    };
+    // Ensure the JNI class registry is initialized from a thread started by Java, so the classes of this library can be resolved
+    let _ = JniRegistry::get(&mut _env);
 
-    runtime.set_interrupt_handler(Some(Box::new(handler)));
+    let runtime = Runtime::new().unwrap();
 
+    // The interrupt handler is installed by createInterruptHandler()
     Box::into_raw(Box::new(runtime)) as jlong
 }
 
@@ -62,6 +40,42 @@ pub(crate) fn runtime_to_ptr(runtime: Box<Runtime>) -> jlong {
     Box::into_raw(runtime) as jlong
 }
 
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.getRawRuntime(long ptr)
+/// Returns the pointer to the QuickJS runtime itself, which is not exposed by rquickjs. It is looked up once with a temporary context.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_getRawRuntime<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    runtime_ptr: jlong,
+) -> jlong {
+    let runtime = ptr_to_runtime(runtime_ptr);
+
+    let context = Context::base(&runtime).unwrap();
+    let raw = context.with(|ctx| unsafe { qjs::JS_GetRuntime(ctx.as_raw().as_ptr()) }) as jlong;
+    drop(context);
+
+    // Prevents dropping the runtime
+    _ = runtime_to_ptr(runtime);
+    raw
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.updateStackTop(long rawPtr)
+/// QuickJS checks for stack overflows relative to the stack of the thread which used the runtime last. If the runtime is used from another
+/// thread, the stack top has to be updated first.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_updateStackTop<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    raw_runtime_ptr: jlong,
+) {
+    unsafe { qjs::JS_UpdateStackTop(raw_runtime_ptr as *mut qjs::JSRuntime) };
+    trace!("Updated stack top of QuickJS runtime");
+}
+
 /// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.closeRuntime(long ptr)
 #[no_mangle]
 pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_closeRuntime<
@@ -119,6 +133,126 @@ pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime
     _ = runtime_to_ptr(runtime);
 }
 
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.executePendingJobs(long ptr, int max)
+/// Executes pending jobs (e.g. Promise reactions) until no job is pending anymore or `max` jobs were executed. Negative values for `max` execute all pending jobs.
+/// Returns the number of executed jobs. If a job fails, the remaining jobs are not executed and the failure is thrown as QuickJSScriptException.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_executePendingJobs<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    runtime_ptr: jlong,
+    max: jint,
+) -> jint {
+    let runtime = ptr_to_runtime(runtime_ptr);
+
+    let mut executed = 0;
+    while max < 0 || executed < max {
+        match runtime.execute_pending_job() {
+            Ok(true) => executed += 1,
+            Ok(false) => break,
+            Err(e) => {
+                // Exceptions thrown by Promise reactions reject the derived Promise, so jobs only fail on uncatchable errors like the interrupt
+                // of the script (deadline, cancellation or operation limit) or if the memory is exhausted. In both cases the remaining jobs
+                // must not be executed.
+                executed += 1;
+                debug!("Failed to execute pending JS job");
+                e.0.with(|ctx| {
+                    handle_exception(Error::Exception, &ctx, &JObject::null(), &mut _env);
+                });
+                break;
+            }
+        }
+        if _env.exception_check().unwrap() {
+            // Java exception thrown by a function called from a job -> stop and let Java handle it
+            break;
+        }
+    }
+    trace!("Executed {} pending JS jobs", executed);
+
+    // Prevents dropping the runtime
+    _ = runtime_to_ptr(runtime);
+    executed
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.isJobPending(long ptr)
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_isJobPending<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    runtime_ptr: jlong,
+) -> jboolean {
+    let runtime = ptr_to_runtime(runtime_ptr);
+    let result = runtime.is_job_pending() as jboolean;
+
+    // Prevents dropping the runtime
+    _ = runtime_to_ptr(runtime);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.getMemoryUsage(long ptr)
+/// Computes the memory usage of the runtime. The values are returned in the order of the components of the Java record
+/// com.github.stefanrichterhuber.quickjs.QuickJSMemoryUsage. QuickJS visits all objects of the runtime to compute them.
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_getMemoryUsage<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+    runtime_ptr: jlong,
+) -> JLongArray<'a> {
+    let runtime = ptr_to_runtime(runtime_ptr);
+    let usage = runtime.memory_usage();
+
+    let values = [
+        usage.malloc_size as jlong,
+        usage.malloc_limit as jlong,
+        usage.memory_used_size as jlong,
+        usage.malloc_count as jlong,
+        usage.memory_used_count as jlong,
+        usage.atom_count as jlong,
+        usage.atom_size as jlong,
+        usage.str_count as jlong,
+        usage.str_size as jlong,
+        usage.obj_count as jlong,
+        usage.obj_size as jlong,
+        usage.prop_count as jlong,
+        usage.prop_size as jlong,
+        usage.shape_count as jlong,
+        usage.shape_size as jlong,
+        usage.js_func_count as jlong,
+        usage.js_func_size as jlong,
+        usage.js_func_code_size as jlong,
+        usage.c_func_count as jlong,
+        usage.array_count as jlong,
+        usage.fast_array_count as jlong,
+        usage.fast_array_elements as jlong,
+        usage.binary_object_count as jlong,
+        usage.binary_object_size as jlong,
+    ];
+    let result = _env.new_long_array(values.len() as i32).unwrap();
+    _env.set_long_array_region(&result, 0, &values).unwrap();
+    trace!("Computed memory usage of QuickJS runtime: {} bytes allocated", usage.malloc_size);
+
+    // Prevents dropping the runtime
+    _ = runtime_to_ptr(runtime);
+    result
+}
+
+/// Implementation com.github.stefanrichterhuber.quickjs.QuickJSRuntime.getBytecodeVersion()
+#[no_mangle]
+pub extern "system" fn Java_com_github_stefanrichterhuber_quickjs_QuickJSRuntime_getBytecodeVersion<
+    'a,
+>(
+    mut _env: JNIEnv<'a>,
+    _obj: JObject<'a>,
+) -> JString<'a> {
+    _env.new_string(script::BYTECODE_VERSION).unwrap()
+}
+
 /// Base for custom `log::Log` implementation, which allows delegating log output to the Java runtime.
 struct JavaLogContext {
     method_id: jni::objects::JStaticMethodID,
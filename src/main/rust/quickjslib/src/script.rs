@@ -0,0 +1,78 @@
+use std::ffi::CString;
+
+use log::trace;
+use rquickjs::{qjs, Ctx, Error, Value};
+
+/// Identifies the bytecode format written by `compile`. QuickJS bytecode is only compatible with the QuickJS version it was created with,
+/// so this has to be changed whenever the rquickjs dependency is updated. rquickjs and rquickjs-sys are pinned to this exact version in
+/// Cargo.toml, so a rebuild can not silently link another QuickJS version.
+pub(crate) const BYTECODE_VERSION: &str = concat!(
+    env!("CARGO_PKG_NAME"),
+    "-",
+    env!("CARGO_PKG_VERSION"),
+    "/rquickjs-0.5.1"
+);
+
+/// Compiles the given JS source into QuickJS bytecode without executing it. Uses the same flags as `Ctx::eval` (global strict mode script),
+/// so cached scripts behave exactly like uncached ones.
+/// * `name` - File name of the script, used in stack traces and exceptions
+/// * `source` - JS source of the script
+pub(crate) fn compile(ctx: &Ctx<'_>, name: &str, source: &str) -> rquickjs::Result<Vec<u8>> {
+    let source = CString::new(source)?;
+    let name = CString::new(name)?;
+
+    let func = unsafe {
+        qjs::JS_Eval(
+            ctx.as_raw().as_ptr(),
+            source.as_ptr(),
+            source.as_bytes().len() as _,
+            name.as_ptr(),
+            (qjs::JS_EVAL_TYPE_GLOBAL | qjs::JS_EVAL_FLAG_STRICT | qjs::JS_EVAL_FLAG_COMPILE_ONLY) as i32,
+        )
+    };
+    if unsafe { qjs::JS_IsException(func) } {
+        return Err(Error::Exception);
+    }
+    // Takes care of freeing the compiled function
+    let func = unsafe { Value::from_raw(ctx.clone(), func) };
+
+    let mut len = 0;
+    let buf = unsafe {
+        qjs::JS_WriteObject(
+            ctx.as_raw().as_ptr(),
+            &mut len,
+            func.as_raw(),
+            qjs::JS_WRITE_OBJ_BYTECODE as i32,
+        )
+    };
+    if buf.is_null() {
+        return Err(Error::Exception);
+    }
+    let bytecode = unsafe { std::slice::from_raw_parts(buf, len as usize) }.to_vec();
+    unsafe { qjs::js_free(ctx.as_raw().as_ptr(), buf as _) };
+
+    trace!("Compiled script to {} bytes of bytecode", bytecode.len());
+    Ok(bytecode)
+}
+
+/// Executes QuickJS bytecode previously created by `compile` and returns the result of the script.
+pub(crate) fn execute<'js>(ctx: &Ctx<'js>, bytecode: &[u8]) -> rquickjs::Result<Value<'js>> {
+    let func = unsafe {
+        qjs::JS_ReadObject(
+            ctx.as_raw().as_ptr(),
+            bytecode.as_ptr(),
+            bytecode.len() as _,
+            qjs::JS_READ_OBJ_BYTECODE as i32,
+        )
+    };
+    if unsafe { qjs::JS_IsException(func) } {
+        return Err(Error::Exception);
+    }
+
+    // JS_EvalFunction takes ownership of the function
+    let result = unsafe { qjs::JS_EvalFunction(ctx.as_raw().as_ptr(), func) };
+    if unsafe { qjs::JS_IsException(result) } {
+        return Err(Error::Exception);
+    }
+    Ok(unsafe { Value::from_raw(ctx.clone(), result) })
+}
@@ -0,0 +1,86 @@
+use std::collections::HashMap;
+use std::ffi::c_void;
+use std::sync::{Mutex, OnceLock};
+
+use jni::objects::GlobalRef;
+use log::trace;
+use rquickjs::{qjs, Ctx, Value};
+
+/// Java direct ByteBuffers currently shared with JS, keyed by the address of their native memory.
+/// Each entry holds a global reference to the ByteBuffer, so its memory is not freed by the Java GC while JS still uses it, and the number of JS ArrayBuffers using it.
+static SHARED_BUFFERS: OnceLock<Mutex<HashMap<usize, (GlobalRef, usize)>>> = OnceLock::new();
+
+fn shared_buffers() -> &'static Mutex<HashMap<usize, (GlobalRef, usize)>> {
+    SHARED_BUFFERS.get_or_init(|| Mutex::new(HashMap::new()))
+}
+
+/// Releases one usage of the shared buffer with the given address. If it is not used by any ArrayBuffer anymore, the global reference to the ByteBuffer is dropped.
+fn release(address: usize) {
+    let mut buffers = shared_buffers().lock().unwrap();
+    if let Some(entry) = buffers.get_mut(&address) {
+        entry.1 -= 1;
+        if entry.1 == 0 {
+            trace!("Released shared java.nio.ByteBuffer at {:#x}", address);
+            buffers.remove(&address);
+        }
+    }
+}
+
+/// Called by QuickJS when an ArrayBuffer backed by a shared ByteBuffer is detached and again (with a null pointer) when it is finalized.
+unsafe extern "C" fn free_shared_buffer(
+    _rt: *mut qjs::JSRuntime,
+    _opaque: *mut c_void,
+    ptr: *mut c_void,
+) {
+    if !ptr.is_null() {
+        release(ptr as usize);
+    }
+}
+
+/// Creates a JS ArrayBuffer directly backed by the native memory of a Java direct ByteBuffer. No data is copied.
+/// The ByteBuffer is kept alive until the ArrayBuffer is either detached or garbage collected by JS.
+/// * `buffer` - Global reference to the java.nio.ByteBuffer
+/// * `address` - Address of the native memory of the buffer
+/// * `len` - Capacity of the buffer
+pub(crate) fn new_shared_array_buffer<'js>(
+    ctx: &Ctx<'js>,
+    buffer: GlobalRef,
+    address: *mut u8,
+    len: usize,
+) -> rquickjs::Result<Value<'js>> {
+    {
+        let mut buffers = shared_buffers().lock().unwrap();
+        buffers
+            .entry(address as usize)
+            .and_modify(|entry| entry.1 += 1)
+            .or_insert((buffer, 1));
+    }
+
+    let value = unsafe {
+        qjs::JS_NewArrayBuffer(
+            ctx.as_raw().as_ptr(),
+            address,
+            len as _,
+            Some(free_shared_buffer),
+            std::ptr::null_mut(),
+            0,
+        )
+    };
+    if unsafe { qjs::JS_IsException(value) } {
+        release(address as usize);
+        return Err(rquickjs::Error::Exception);
+    }
+    trace!("Shared java.nio.ByteBuffer at {:p} with JS", address);
+    Ok(unsafe { Value::from_raw(ctx.clone(), value) })
+}
+
+/// Returns the Java ByteBuffer backing the memory at the given address, if it is shared with JS.
+pub(crate) fn shared_buffer_at(address: usize) -> Option<GlobalRef> {
+    let buffers = shared_buffers().lock().unwrap();
+    buffers.get(&address).map(|entry| entry.0.clone())
+}
+
+/// Detaches the given JS ArrayBuffer. Afterwards JS can not access its memory anymore and, if backed by a shared ByteBuffer, the reference to the ByteBuffer is released.
+pub(crate) fn detach_array_buffer(ctx: &Ctx<'_>, value: &Value<'_>) {
+    unsafe { qjs::JS_DetachArrayBuffer(ctx.as_raw().as_ptr(), value.as_raw()) };
+}
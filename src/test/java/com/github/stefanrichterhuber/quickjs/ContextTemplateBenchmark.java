@@ -0,0 +1,85 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the creation of a fully initialized context (prelude evaluated from
+ * source and globals set) with the creation of a context from a
+ * QuickJSContextTemplate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextTemplateBenchmark {
+    private static final int FUNCTIONS = 500;
+    private static final int GLOBALS = 50;
+
+    private QuickJSRuntime runtime;
+    private String prelude;
+    private QuickJSContextTemplate template;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            sb.append("function f").append(i).append("(a, b) { const r = [];")
+                    .append(" for (let i = 0; i < a; i++) { r.push(String(b) + i); }")
+                    .append(" return r.join(',') + ").append(i).append("; }\n");
+        }
+        prelude = sb.toString();
+
+        template = new QuickJSContextTemplate()
+                .withScript("prelude.js", prelude)
+                .withInitializer(ContextTemplateBenchmark::setGlobals);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        runtime.close();
+    }
+
+    private static void setGlobals(QuickJSContext context) {
+        for (int i = 0; i < GLOBALS; i++) {
+            context.setGlobal("g" + i, "value" + i);
+        }
+    }
+
+    /**
+     * Creates a context, evaluates the prelude from source and sets the globals
+     */
+    @Benchmark
+    public Object fullInitialization() throws Exception {
+        try (QuickJSContext context = runtime.createContext()) {
+            context.eval(prelude);
+            setGlobals(context);
+            return context.getGlobal("g0");
+        }
+    }
+
+    /**
+     * Creates a context from the template
+     */
+    @Benchmark
+    public Object fromTemplate() throws Exception {
+        try (QuickJSContext context = runtime.createContext(template)) {
+            return context.getGlobal("g0");
+        }
+    }
+}
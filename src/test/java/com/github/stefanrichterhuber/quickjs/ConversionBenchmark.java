@@ -0,0 +1,135 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of converting single values between Java and JS. Each
+ * invocation converts {@value #SIZE} values, so the reported score is the time
+ * per converted value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+    private static final int SIZE = 10_000;
+    private static final int LARGE_SIZE = 1_000_000;
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+    private Map<String, Object> map;
+    private List<Object> list;
+    private List<Object> largeList;
+    private double[] doubles;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        context = runtime.createContext();
+
+        doubles = new double[SIZE];
+        map = new HashMap<>();
+        list = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            map.put("key" + i, i % 2 == 0 ? i : "value" + i);
+            list.add(i % 2 == 0 ? (Object) (i + 0.5d) : Boolean.TRUE);
+            doubles[i] = i + 0.5d;
+        }
+        largeList = new ArrayList<>(LARGE_SIZE);
+        for (int i = 0; i < LARGE_SIZE; i++) {
+            largeList.add(i);
+        }
+        context.eval("var o = {}; var a = []; for (let i = 0; i < " + SIZE
+                + "; i++) { o['key' + i] = i % 2 == 0 ? i : 'value' + i; a.push(i % 2 == 0 ? i + 0.5 : true); }"
+                + "var d = new Float64Array(" + SIZE + ").map((v, i) => i + 0.5);");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+    }
+
+    /**
+     * Java Map -> JS object
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void javaMapToJs() {
+        context.setGlobal("m", map);
+    }
+
+    /**
+     * Java List -> JS array
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void javaListToJs() {
+        context.setGlobal("l", list);
+    }
+
+    /**
+     * Large Java List -> JS array. The time per element should match
+     * {@link #javaListToJs()}, as conversion is linear in the size.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LARGE_SIZE)
+    public void largeJavaListToJs() {
+        context.setGlobal("ll", largeList);
+    }
+
+    /**
+     * Java double[] -> JS Float64Array
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void javaDoubleArrayToJs() {
+        context.setGlobal("ds", doubles);
+    }
+
+    /**
+     * JS object -> Java Map
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Object jsObjectToJava() {
+        return context.getGlobal("o");
+    }
+
+    /**
+     * JS array -> Java List
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Object jsArrayToJava() {
+        return context.getGlobal("a");
+    }
+
+    /**
+     * JS Float64Array -> Java double[]
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Object jsFloat64ArrayToJava() {
+        return context.getGlobal("d");
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the QuickJSExecutorPool with an increasing number
+ * of workers. Each invocation submits {@value #TASKS} tasks and waits for all
+ * of them, so the reported score is the number of tasks per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorPoolBenchmark {
+    private static final int TASKS = 1_000;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int workers;
+
+    private QuickJSExecutorPool pool;
+
+    @Setup
+    public void setup() {
+        pool = new QuickJSExecutorPool(workers).withTemplate(new QuickJSContextTemplate()
+                .withScript("prelude.js", "function work(n) { let s = 0; for (let i = 0; i < n; i++) { s += i % 7; } return s; }"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void submit() {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            futures[i] = pool.submit(ctx -> ctx.invoke("work", 1_000));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares calling JS functions through an interface proxy with invoking them
+ * by name (which the proxy did on every call before) and with calling a
+ * resolved function handle directly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterfaceBenchmark {
+    public static interface Scoring {
+        double score(int a, int b);
+    }
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+    private Scoring scoring;
+    private QuickJSFunction score;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        context = runtime.createContext();
+        context.eval("var models = { v1: { score: (a, b) => a * 0.5 + b } }");
+        scoring = context.getInterface("models.v1", Scoring.class);
+        score = context.lookupFunction("models.v1.score");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+    }
+
+    /**
+     * Interface proxy with cached dispatch and primitive result
+     */
+    @Benchmark
+    public double proxy() {
+        return scoring.score(3, 4);
+    }
+
+    /**
+     * Resolves the nested name on each call
+     */
+    @Benchmark
+    public Object invokeByName() {
+        return context.invoke("models.v1.score", 3, 4);
+    }
+
+    /**
+     * Calls the resolved function handle directly
+     */
+    @Benchmark
+    public Object handle() {
+        return score.apply(3, 4);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of the interrupt handler on CPU-bound scripts, which
+ * poll it most often, and of the limit bookkeeping on short calls. Compare the
+ * runs without limit to the ones with a script runtime, CPU time or operation
+ * limit to see the cost of the respective check. Operations are counted in
+ * all runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterruptBenchmark {
+    @Param({ "none", "runtime", "cpu", "operations" })
+    public String limit;
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        switch (limit) {
+            case "runtime":
+                runtime.withScriptRuntimeLimit(1, TimeUnit.MINUTES);
+                break;
+            case "cpu":
+                runtime.withScriptCpuTimeLimit(1, TimeUnit.MINUTES);
+                break;
+            case "operations":
+                runtime.withScriptOperationLimit(Long.MAX_VALUE / 2);
+                break;
+            default:
+                break;
+        }
+        context = runtime.createContext();
+        context.eval("function spin(n) { let s = 0; for (let i = 0; i < n; i++) { s = (s + i) % 1000003; } return s; }"
+                + "function add(a, b) { return a + b; }");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+    }
+
+    @Benchmark
+    public Object loop() {
+        return context.invoke("spin", 1_000_000);
+    }
+
+    /**
+     * Short call, dominated by the bookkeeping of limits and statistics
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object call() {
+        return context.invoke("add", 1, 2);
+    }
+}
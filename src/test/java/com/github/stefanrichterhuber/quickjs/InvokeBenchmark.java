@@ -0,0 +1,117 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares calling a JS function for many rows one by one, in a single batch
+ * and through a resolved function handle. The handle is also compared with
+ * invoking a function in a nested namespace by name. All variants apply the
+ * limits of the runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeBenchmark {
+    @Param({ "1000", "10000" })
+    public int rows;
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+    private Object[][] tuples;
+    private Object[] results;
+    private QuickJSFunction score;
+    private QuickJSFunction nestedScore;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        context = runtime.createContext();
+        context.eval("function score(a, b) { return a * 0.5 + b; }");
+        context.eval("var models = { v1: { scoring: { score } } }");
+        score = context.lookupFunction("score");
+        nestedScore = context.lookupFunction("models.v1.scoring.score");
+
+        tuples = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            tuples[i] = new Object[] { i, (double) i / rows };
+        }
+        results = new Object[rows];
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+    }
+
+    /**
+     * One native call (and function lookup) per row
+     */
+    @Benchmark
+    public Object[] invoke() {
+        for (int i = 0; i < rows; i++) {
+            results[i] = context.invoke("score", tuples[i]);
+        }
+        return results;
+    }
+
+    /**
+     * A single native call for all rows
+     */
+    @Benchmark
+    public Object[] invokeBatch() {
+        context.invokeBatch("score", tuples, results);
+        return results;
+    }
+
+    /**
+     * One native call per row through a resolved handle
+     */
+    @Benchmark
+    public Object[] invokeHandle() {
+        for (int i = 0; i < rows; i++) {
+            results[i] = score.apply(tuples[i]);
+        }
+        return results;
+    }
+
+    /**
+     * One native call per row, resolving a function in a nested namespace on each
+     * call
+     */
+    @Benchmark
+    public Object[] invokeNested() {
+        for (int i = 0; i < rows; i++) {
+            results[i] = context.invoke("models.v1.scoring.score", tuples[i]);
+        }
+        return results;
+    }
+
+    /**
+     * One native call per row through a resolved handle of a function in a nested
+     * namespace
+     */
+    @Benchmark
+    public Object[] invokeNestedHandle() {
+        for (int i = 0; i < rows; i++) {
+            results[i] = nestedScore.apply(tuples[i]);
+        }
+        return results;
+    }
+}
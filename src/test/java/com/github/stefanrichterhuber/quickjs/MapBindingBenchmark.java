@@ -0,0 +1,74 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares eager (copy) and lazy (Proxy) binding of Java maps for different map
+ * sizes and ratios of accessed keys. Each invocation binds the map and then
+ * reads the given ratio of its keys from JS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBindingBenchmark {
+    private static final String ACCESS_SCRIPT = "(() => { let s = 0; for (const k of keys) { s += m[k]; } return s; })()";
+
+    @Param({ "1000", "10000", "100000" })
+    private int size;
+
+    @Param({ "0.001", "0.01", "0.1", "1.0" })
+    private double accessRatio;
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+    private Map<String, Object> map;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        context = runtime.createContext();
+
+        map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("key" + i, i);
+        }
+        final int step = Math.max(1, (int) Math.round(1 / accessRatio));
+        context.eval("var keys = []; for (let i = 0; i < " + size + "; i += " + step + ") { keys.push('key' + i); }");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+    }
+
+    @Benchmark
+    public Object eager() {
+        context.setGlobal("m", map, Binding.EAGER);
+        return context.eval(ACCESS_SCRIPT);
+    }
+
+    @Benchmark
+    public Object lazy() {
+        context.setGlobal("m", map, Binding.LAZY);
+        return context.eval(ACCESS_SCRIPT);
+    }
+}
@@ -1,21 +1,36 @@
 package com.github.stefanrichterhuber.quickjs;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -407,6 +422,290 @@ public class QuickJSContextTest {
         }
     }
 
+    /**
+     * Large Java collections are converted completely into JS arrays / objects.
+     * The conversion time of even larger collections is measured in
+     * {@link ConversionBenchmark}.
+     */
+    @Test
+    public void largeCollectionTest() throws Exception {
+        for (int size : new int[] { 1_000, 10_000, 100_000 }) {
+            try (QuickJSRuntime runtime = new QuickJSRuntime();
+                    QuickJSContext context = runtime.createContext()) {
+
+                final List<Integer> list = new ArrayList<>(size);
+                final Integer[] array = new Integer[size];
+                final Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    list.add(i);
+                    array[i] = i;
+                    map.put("k" + i, i);
+                }
+                final long expectedSum = (long) size * (size - 1) / 2;
+
+                context.setGlobal("vs", list);
+                assertEquals(size, context.eval("vs.length"));
+                assertEquals(size - 1, context.eval("vs[vs.length - 1]"));
+                assertEquals(expectedSum, ((Number) context.eval("vs.reduce((a, b) => a + b, 0)")).longValue());
+
+                context.setGlobal("as", array);
+                assertEquals(size, context.eval("as.length"));
+                assertEquals(size - 1, context.eval("as[as.length - 1]"));
+                assertEquals(expectedSum, ((Number) context.eval("as.reduce((a, b) => a + b, 0)")).longValue());
+
+                context.setGlobal("m", map);
+                assertEquals(size, context.eval("Object.keys(m).length"));
+                assertEquals(size - 1, context.eval("m['k" + (size - 1) + "']"));
+
+                // The way back yields the same elements in the same order
+                assertEquals(list, context.eval("vs"));
+            }
+        }
+    }
+
+    /**
+     * Java primitive arrays are converted to JS TypedArrays and vice versa
+     */
+    @Test
+    public void typedArrayTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            context.setGlobal("ds", new double[] { 1.5, 2.5, 3.5 });
+            assertEquals(true, context.eval("ds instanceof Float64Array"));
+            assertEquals(7.5, context.eval("ds.reduce((a, b) => a + b, 0)"));
+            assertArrayEquals(new double[] { 1.5, 2.5, 3.5 }, (double[]) context.eval("ds"));
+
+            context.setGlobal("is", new int[] { 1, 2, 3 });
+            assertEquals(true, context.eval("is instanceof Int32Array"));
+            assertArrayEquals(new int[] { 2, 4, 6 }, (int[]) context.eval("is.map(v => v * 2)"));
+
+            context.setGlobal("bs", new byte[] { -1, 0, 1 });
+            assertEquals(true, context.eval("bs instanceof Int8Array"));
+            assertArrayEquals(new byte[] { -1, 0, 1 }, (byte[]) context.eval("bs"));
+            assertArrayEquals(new byte[] { 1, 2 }, (byte[]) context.eval("new Uint8Array([1, 2]).buffer"));
+            assertArrayEquals(new byte[] { 0, 127, (byte) 255 },
+                    (byte[]) context.eval("new Uint8ClampedArray([-5, 127, 300])"));
+            assertArrayEquals(new byte[] { 2, 3 },
+                    (byte[]) context.eval("new DataView(new Uint8Array([1, 2, 3, 4]).buffer, 1, 2)"));
+
+            assertArrayEquals(new short[] { -1, 2 }, (short[]) context.eval("new Int16Array([-1, 2])"));
+            assertArrayEquals(new short[] { -1, 2 }, (short[]) context.eval("new Uint16Array([65535, 2])"));
+
+            context.setGlobal("ls", new long[] { Long.MAX_VALUE, 2L });
+            assertEquals(true, context.eval("ls instanceof BigInt64Array"));
+            assertArrayEquals(new long[] { Long.MAX_VALUE, 2L }, (long[]) context.eval("ls"));
+
+            context.setGlobal("fs", new float[] { 0.5f, 1.5f });
+            assertEquals(true, context.eval("fs instanceof Float32Array"));
+            assertArrayEquals(new float[] { 0.5f, 1.5f }, (float[]) context.eval("fs"));
+
+            // Primitive arrays as function arguments
+            context.eval("function sum(values) { return values.reduce((a, b) => a + b, 0); }");
+            assertEquals(6, ((Number) context.invoke("sum", new int[] { 1, 2, 3 })).intValue());
+
+            // Large arrays are copied in bulk
+            final double[] large = new double[1_000_000];
+            for (int i = 0; i < large.length; i++) {
+                large[i] = i * 0.5;
+            }
+            context.setGlobal("large", large);
+            final double[] doubled = (double[]) context.eval("large.map(v => v * 2)");
+            assertEquals(large.length, doubled.length);
+            assertEquals(large[large.length - 1] * 2, doubled[doubled.length - 1]);
+        }
+    }
+
+    /**
+     * Direct ByteBuffers are shared with JS as ArrayBuffers without copy
+     */
+    @Test
+    public void byteBufferTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+            buffer.put(0, (byte) 42);
+            context.setGlobal("buf", buffer);
+
+            assertEquals(true, context.eval("buf instanceof ArrayBuffer"));
+            assertEquals(16, context.eval("buf.byteLength"));
+            assertEquals(42, context.eval("new Uint8Array(buf)[0]"));
+
+            // Changes by JS are visible in Java and vice versa
+            context.eval("new Uint8Array(buf)[1] = 7");
+            assertEquals(7, buffer.get(1));
+            buffer.put(2, (byte) 9);
+            assertEquals(9, context.eval("new Uint8Array(buf)[2]"));
+
+            // The ArrayBuffer returns as the original ByteBuffer
+            assertTrue(buffer == context.eval("buf"));
+
+            // After detaching JS has no access to the memory anymore
+            context.detachArrayBuffer("buf");
+            assertEquals(0, context.eval("buf.byteLength"));
+            assertEquals(9, buffer.get(2));
+
+            // Shared buffers might not be aligned to the element size of a TypedArray
+            final ByteBuffer misaligned = ByteBuffer.allocateDirect(9).slice(1, 8);
+            context.setGlobal("misaligned", misaligned);
+            context.eval("new Int32Array(misaligned).set([1, -2])");
+            assertArrayEquals(new int[] { 1, -2 }, (int[]) context.eval("new Int32Array(misaligned)"));
+            assertArrayEquals(new double[] { 0.5 }, (double[]) context.eval("new Float64Array(misaligned).fill(0.5)"));
+
+            try {
+                context.setGlobal("heap", ByteBuffer.allocate(16));
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Expected, only direct buffers can be shared
+            }
+        }
+    }
+
+    /**
+     * With lazy result binding JS objects and arrays are returned as views instead
+     * of copies
+     */
+    @Test
+    public void lazyResultBindingTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext().withResultBinding(Binding.LAZY)) {
+
+            context.eval("var o = { a: 1, b: 'two', nested: { c: [1, 2, 3] } }");
+
+            Object result = context.eval("o");
+            assertInstanceOf(QuickJSObject.class, result);
+            Map<?, ?> o = (Map<?, ?>) result;
+            assertEquals(3, o.size());
+            assertEquals(1, o.get("a"));
+            assertEquals("two", o.get("b"));
+            assertTrue(o.containsKey("nested"));
+            assertFalse(o.containsKey("d"));
+
+            Map<?, ?> nested = (Map<?, ?>) o.get("nested");
+            assertInstanceOf(QuickJSArray.class, nested.get("c"));
+            List<?> c = (List<?>) nested.get("c");
+            assertEquals(3, c.size());
+            assertEquals(3, c.get(2));
+            assertEquals(List.of(1, 2, 3), c);
+
+            // Changes are written through to JS
+            @SuppressWarnings("unchecked")
+            Map<String, Object> writable = (Map<String, Object>) o;
+            assertNull(writable.put("d", "four"));
+            assertEquals("four", context.eval("o.d"));
+            writable.remove("a");
+            assertEquals(true, context.eval("o.a === undefined"));
+
+            // Setting a property does not call its getter
+            context.eval("var getterCalls = 0; Object.defineProperty(o, 'g', "
+                    + "{ get() { getterCalls++; return 1; }, set(v) {}, enumerable: true })");
+            writable.put("g", 2);
+            assertEquals(0, context.eval("getterCalls"));
+
+            // Views passed back to JS are transformed back to the original JS value
+            context.setGlobal("o2", writable);
+            assertEquals(true, context.eval("o === o2"));
+
+            // Views can not be passed to other contexts, or after their context was closed
+            try (QuickJSRuntime otherRuntime = new QuickJSRuntime();
+                    QuickJSContext other = otherRuntime.createContext()) {
+                try {
+                    other.setGlobal("foreign", writable);
+                    fail("Views must not be passed to other contexts");
+                } catch (IllegalArgumentException e) {
+                    // Expected
+                }
+
+                final QuickJSContext closed = runtime.createContext().withResultBinding(Binding.LAZY);
+                @SuppressWarnings("unchecked")
+                final Map<String, Object> stale = (Map<String, Object>) closed.eval("({ a: 1 })");
+                closed.close();
+                try {
+                    other.setGlobal("stale", stale);
+                    fail("Views of closed contexts must not be passed to JS");
+                } catch (IllegalStateException e) {
+                    // Expected
+                }
+            }
+
+            // Eager binding still copies
+            context.withResultBinding(Binding.EAGER);
+            assertInstanceOf(HashMap.class, context.eval("o"));
+
+            // Property accesses are subject to the runtime limits of scripts
+            runtime.withScriptRuntimeLimit(200, TimeUnit.MILLISECONDS);
+            context.eval("Object.defineProperty(o, 'spin', { get() { while (true) {} } })");
+            try {
+                o.get("spin");
+                fail("Getter should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+        }
+    }
+
+    /**
+     * Lazily bound Java maps forward all property accesses to the map
+     */
+    @Test
+    public void lazyMapBindingTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            final Map<String, Object> nested = new HashMap<>();
+            nested.put("c", "nested");
+            final Map<String, Object> map = new HashMap<>();
+            map.put("a", 1);
+            map.put("b", "two");
+            map.put("n", null);
+            map.put("nested", nested);
+
+            context.setGlobal("m", map, Binding.LAZY);
+
+            assertEquals(1, context.eval("m.a"));
+            assertEquals("two", context.eval("m['b']"));
+            assertEquals(true, context.eval("m.n === null"));
+            assertEquals(true, context.eval("m.x === undefined"));
+            assertEquals(true, context.eval("'a' in m"));
+            assertEquals(false, context.eval("'x' in m"));
+            assertEquals("nested", context.eval("m.nested.c"));
+            assertEquals(4, context.eval("Object.keys(m).length"));
+
+            // Changes on the Java side are visible in JS
+            map.put("d", 4);
+            assertEquals(4, context.eval("m.d"));
+
+            // Changes on the JS side are visible in Java
+            context.eval("m.e = 'five'; delete m.a; m.nested.f = 6");
+            assertEquals("five", map.get("e"));
+            assertFalse(map.containsKey("a"));
+            assertEquals(6, nested.get("f"));
+
+            // Only String keys are visible as properties
+            final Map<Object, Object> mixed = new HashMap<>();
+            mixed.put(1, "one");
+            mixed.put("two", 2);
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> mixedKeys = (Map<String, Object>) (Map<?, ?>) mixed;
+            context.setGlobal("mixed", mixedKeys, Binding.LAZY);
+            assertEquals("two", context.eval("Object.keys(mixed).join()"));
+            assertEquals(1, context.eval("Reflect.ownKeys(mixed).length"));
+
+            // Symbol keys are kept in JS and never reach the Java map, even in strict mode
+            final int size = map.size();
+            assertEquals("iterated", context.eval("(() => { 'use strict'; const s = Symbol('s');"
+                    + " m[Symbol.iterator] = function* () { yield 'iterated'; }; m[s] = 1;"
+                    + " const ok = s in m && m[s] === 1 && delete m[s] && !(s in m);"
+                    + " return ok ? [...m][0] : 'failed'; })()"));
+            assertEquals(size, map.size());
+
+            // Exceptions of the map are passed to JS
+            context.setGlobal("im", Map.of("a", 1), Binding.LAZY);
+            assertEquals(true, context.eval("try { im.b = 2; false; } catch (e) { true; }"));
+        }
+    }
+
     /**
      * Java Maps could be mapped to JS objects. Key type must be string, value
      * supports all supported java types (simple
@@ -548,6 +847,174 @@ public class QuickJSContextTest {
         }
     }
 
+    /**
+     * Single calls can have their own timeout. Nested calls never run longer than
+     * the script they are nested in, and the outer deadline is restored after
+     * them.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void perCallTimeoutTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            context.eval("function spin() { while (true) {} }; function quick() { return 1; }");
+            context.setGlobal("nestedSpin", (Supplier<Object>) () -> context.invoke(Duration.ofSeconds(10), "spin"));
+            context.setGlobal("nestedQuick",
+                    (Supplier<Object>) () -> context.invoke(Duration.ofSeconds(10), "quick"));
+
+            try {
+                context.eval("while (true) {}", Duration.ofMillis(200));
+                fail("Script should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+
+            try {
+                context.invoke(Duration.ofMillis(200), "spin");
+                fail("Function should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+
+            // The inner timeout is longer than the outer one
+            final long startTime = System.nanoTime();
+            try {
+                context.eval("nestedSpin()", Duration.ofMillis(200));
+                fail("Nested function should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                // Expected
+            }
+            // The nested call ended with the outer deadline, not with its own
+            assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+
+            // The outer deadline is still in place after the nested call
+            try {
+                context.eval("nestedQuick(); while (true) {}", Duration.ofMillis(200));
+                fail("Script should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+
+            // Calls without timeout are not affected
+            assertEquals(2, context.eval("1 + 1"));
+            assertEquals(1, context.eval("nestedQuick()"));
+        }
+    }
+
+    /**
+     * CPU time of scripts can be limited. Time the script is waiting does not count
+     * against the limit.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void limitCpuTimeTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withScriptCpuTimeLimit(200, TimeUnit.MILLISECONDS)
+                .withExecutionStats(true);
+                QuickJSContext context = runtime.createContext()) {
+
+            context.setGlobal("wait", (Supplier<Boolean>) () -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            });
+
+            // Waiting exceeds the limit in wall-clock time, but not in CPU time
+            assertEquals(true, context.eval("wait()"));
+            final QuickJSRuntime.ExecutionStats stats = runtime.getLastExecutionStats();
+            assertTrue(stats.wallTime().toMillis() >= 500);
+            assertTrue(stats.cpuTime().compareTo(stats.wallTime()) < 0);
+
+            try {
+                context.eval("while (true) {}");
+                fail("Script should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+            assertTrue(runtime.getLastExecutionStats().cpuTime().toMillis() >= 200);
+        }
+    }
+
+    /**
+     * The number of operations of scripts can be limited. Operations are counted
+     * deterministically.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void limitOperationsTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withExecutionStats(true);
+                QuickJSContext context = runtime.createContext()) {
+
+            context.eval("function spin(n) { let s = 0; for (let i = 0; i < n; i++) { s += i; } return s; }");
+            context.invoke("spin", 1_000_000);
+            final long operations = runtime.getLastExecutionStats().operations();
+            assertTrue(operations > 0);
+            // Same work, same count (QuickJS does not reset its poll counter between
+            // calls, so the count might differ by one)
+            context.invoke("spin", 1_000_000);
+            assertTrue(Math.abs(operations - runtime.getLastExecutionStats().operations()) <= 1);
+
+            runtime.withScriptOperationLimit(operations / 2);
+            try {
+                context.invoke("spin", 1_000_000);
+                fail("Script should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+            assertEquals(operations / 2, runtime.getLastExecutionStats().operations());
+
+            // Each call has its own budget
+            context.invoke("spin", 300_000);
+            context.invoke("spin", 300_000);
+
+            // Stats are only collected on request
+            runtime.withExecutionStats(false);
+            context.invoke("spin", 1);
+            assertNull(runtime.getLastExecutionStats());
+        }
+    }
+
+    /**
+     * Memory usage of the runtime and memory allocated by single calls can be
+     * reported
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void memoryUsageTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withExecutionStats(true).withMemoryUsageTracking(true);
+                QuickJSContext context = runtime.createContext()) {
+
+            final QuickJSMemoryUsage before = runtime.getMemoryUsage();
+            assertTrue(before.mallocSize() > 0);
+            assertTrue(before.objectCount() > 0);
+
+            context.eval("var objects = []; for (let i = 0; i < 1000; i++) { objects.push({ i, s: 'value ' + i }); }");
+            final QuickJSMemoryUsage delta = runtime.getLastExecutionStats().memoryDelta();
+            assertNotNull(delta);
+            assertTrue(delta.objectCount() >= 1000);
+            assertTrue(delta.mallocSize() > 0);
+
+            final QuickJSMemoryUsage after = runtime.getMemoryUsage();
+            assertTrue(after.objectCount() - before.objectCount() >= 1000);
+            assertTrue(after.minus(before).mallocSize() > 0);
+
+            context.eval("function grow(n) { for (let i = 0; i < n; i++) { objects.push({ i }); } }");
+            context.invoke("grow", 100);
+            assertTrue(runtime.getLastExecutionStats().memoryDelta().objectCount() >= 100);
+
+            runtime.withMemoryUsageTracking(false);
+            context.eval("1 + 1");
+            assertEquals(null, runtime.getLastExecutionStats().memoryDelta());
+        }
+    }
+
     /**
      * Memory consumption of any script execution can be limited in the
      * QuickJSRuntime object
@@ -650,6 +1117,124 @@ public class QuickJSContextTest {
         }
     }
 
+    /**
+     * Functions can be resolved once and called without resolving their name again
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void lookupFunctionTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+            context.eval("var a = { b: { c: { add: (x, y) => x + y } } }; var value = 1;");
+
+            final QuickJSFunction add = context.lookupFunction("a.b.c.add");
+            assertEquals(3, add.apply(1, 2));
+            assertEquals(context.invoke("a.b.c.add", 1, 2), add.apply(1, 2));
+
+            // The handle keeps referring to the resolved function
+            context.eval("a.b.c.add = (x, y) => x * y");
+            assertEquals(3, add.apply(1, 2));
+            assertEquals(2, context.invoke("a.b.c.add", 1, 2));
+
+            try {
+                context.lookupFunction("a.b.missing");
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getMessage().contains("missing is not a function"));
+            }
+            try {
+                context.lookupFunction("value.f");
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getMessage().contains("value is not an object"));
+            }
+
+            // Proxies resolve each method once
+            context.eval("var ns = { f1: (n) => 'Hello ' + n, f2: (n) => 'Bye ' + n }");
+            final TestInterface ti = context.getInterface("ns", TestInterface.class);
+            assertEquals("Hello World", ti.f1("World"));
+            assertEquals("Hello again", ti.f1("again"));
+            assertEquals("Bye World", ti.f2("World"));
+
+            // Calls of the handle are subject to the runtime limits
+            runtime.withScriptRuntimeLimit(200, TimeUnit.MILLISECONDS);
+            context.eval("function spin() { while (true) {} }");
+            final QuickJSFunction spin = context.lookupFunction("spin");
+            try {
+                spin.apply();
+                fail("Function should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+        }
+    }
+
+    public static interface TypedInterface {
+        int count();
+
+        long total(int a, int b);
+
+        double ratio(int a, int b);
+
+        Double half(int a);
+
+        void reset();
+
+        boolean enabled(int a);
+
+        char initial(String s);
+
+        Integer missing();
+
+        int missingCount();
+    }
+
+    /**
+     * Results of proxied methods are converted to the declared numeric return
+     * types, including primitives
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void typedProxyTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+            context.eval("var calls = 0; var typed = { count: () => ++calls, total: (a, b) => a + b, "
+                    + "ratio: (a, b) => a / b, half: (a) => a / 2, reset: () => { calls = 0; return 'ignored'; }, "
+                    + "enabled: (a) => a, initial: (s) => s[0], missing: () => undefined, missingCount: () => {} }");
+
+            final TypedInterface typed = context.getInterface("typed", TypedInterface.class);
+            assertEquals(1, typed.count());
+            assertEquals(2, typed.count());
+            assertEquals(7L, typed.total(3, 4));
+            // JS returns an integer for 4 / 2, which is converted to double
+            assertEquals(2.0, typed.ratio(4, 2));
+            assertEquals(0.5, typed.ratio(1, 2));
+            assertEquals(Double.valueOf(2.0), typed.half(4));
+            typed.reset();
+            assertEquals(0, context.getGlobal("calls"));
+
+            // Boolean and char results are converted, too
+            assertTrue(typed.enabled(1));
+            assertFalse(typed.enabled(0));
+            assertEquals('J', typed.initial("JS"));
+
+            // Missing results are null for wrapper types, but fail for primitives
+            assertNull(typed.missing());
+            try {
+                typed.missingCount();
+                fail("Primitive result must not be undefined");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("typed.missingCount"));
+            }
+
+            // Methods of java.lang.Object are not passed to JS
+            assertEquals(typed, typed);
+            assertTrue(typed.toString().contains(TypedInterface.class.getName()));
+        }
+    }
+
     public static class TestClass {
         public void call(String name) {
             LOGGER.debug(name);
@@ -677,6 +1262,646 @@ public class QuickJSContextTest {
         }
     }
 
+    /**
+     * Scripts are compiled once and executed repeatedly in different contexts
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void compiledScriptTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context1 = runtime.createContext();
+                QuickJSContext context2 = runtime.createContext()) {
+
+            QuickJSScript script = context1.compile("counter.js",
+                    "var counter = (typeof counter === 'undefined' ? 0 : counter) + 1; counter * factor;");
+            assertEquals("counter.js", script.getName());
+
+            context1.setGlobal("factor", 2);
+            context2.setGlobal("factor", 3);
+
+            assertEquals(2, script.execute(context1));
+            assertEquals(4, script.execute(context1));
+            assertEquals(3, script.execute(context2));
+            assertEquals(6, script.execute(context2));
+            assertEquals(2, context1.getGlobal("counter"));
+
+            try {
+                context1.compile("broken.js", "var a = ;");
+                fail();
+            } catch (Exception e) {
+                assertInstanceOf(QuickJSScriptException.class, e);
+            }
+
+            QuickJSScript throwing = context1.compile("throwing.js", "throw new Error('from script');");
+            try {
+                throwing.execute(context2);
+                fail();
+            } catch (Exception e) {
+                assertInstanceOf(QuickJSScriptException.class, e);
+            }
+        }
+    }
+
+    /**
+     * Compiled scripts are persisted in the bytecode cache and reused by new
+     * runtimes. Corrupt entries are detected and replaced.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void bytecodeCacheTest() throws Exception {
+        final Path directory = Files.createTempDirectory("quickjs-cache");
+        final QuickJSBytecodeCache cache = new QuickJSBytecodeCache(directory);
+
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withBytecodeCache(cache);
+                QuickJSContext context = runtime.createContext()) {
+            assertEquals(7, context.compile("add.js", "3 + 4").execute(context));
+            assertEquals(0, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withBytecodeCache(cache);
+                QuickJSContext context = runtime.createContext()) {
+            assertEquals(7, context.compile("add.js", "3 + 4").execute(context));
+            assertEquals(1, cache.getHits());
+        }
+
+        // Corrupt the entry -> it is compiled again
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : entries.toList()) {
+                final byte[] content = Files.readAllBytes(entry);
+                content[content.length - 1] ^= 0xFF;
+                Files.write(entry, content);
+            }
+        }
+        final QuickJSBytecodeCache reopened = new QuickJSBytecodeCache(directory).withMemoryMapping(true);
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withBytecodeCache(reopened);
+                QuickJSContext context = runtime.createContext()) {
+            assertEquals(7, context.compile("add.js", "3 + 4").execute(context));
+            assertEquals(0, reopened.getHits());
+            assertEquals(1, reopened.getMisses());
+
+            assertEquals(7, context.compile("add.js", "3 + 4").execute(context));
+            assertEquals(1, reopened.getHits());
+
+            // Only the most recently used entry fits into the cache
+            final long limit = reopened.getSize() * 3 / 2;
+            reopened.withMaxSize(limit);
+            assertEquals(12, context.compile("mul.js", "3 * 4").execute(context));
+            assertTrue(reopened.getSize() <= limit);
+            try (Stream<Path> entries = Files.list(directory)) {
+                assertEquals(1, entries.count());
+            }
+        } finally {
+            reopened.clear();
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Repeated evaluations of the same script are served from the script cache
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void scriptCacheTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withScriptCache(1024 * 1024);
+                QuickJSContext context = runtime.createContext()) {
+            final QuickJSScriptCache cache = runtime.getScriptCache();
+            assertNotNull(cache);
+
+            context.eval("var counter = 0;");
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(i, context.eval("++counter"));
+            }
+            assertEquals(1 + 1, cache.getMisses());
+            assertEquals(2, cache.getHits());
+            assertEquals(2, cache.getEntries());
+
+            // Exceptions are thrown like without the cache
+            try {
+                context.eval("throw new Error('cached')");
+                fail();
+            } catch (Exception e) {
+                assertInstanceOf(QuickJSScriptException.class, e);
+            }
+
+            // A small budget evicts the least recently used scripts
+            final long size = cache.getSize();
+            runtime.withScriptCache(size);
+            context.eval("1 + 1");
+            assertTrue(cache.getEvictions() > 0);
+            assertTrue(cache.getSize() <= size);
+
+            // The cache is limited to half of the memory limit
+            runtime.withMemoryLimit(2 * size);
+            assertEquals(size, cache.getByteBudget());
+
+            // Cached scripts are evaluated in strict mode, like uncached ones
+            final String strict = "(function () { return this === undefined; })()";
+            assertEquals(true, context.eval(strict));
+
+            runtime.withScriptCache(0);
+            assertEquals(null, runtime.getScriptCache());
+            assertEquals(2, context.eval("1 + 1"));
+            assertEquals(true, context.eval(strict));
+        }
+    }
+
+    /**
+     * Contexts created from a template are initialized, but isolated from each
+     * other
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void contextTemplateTest() throws Exception {
+        final AtomicInteger initialized = new AtomicInteger();
+        final QuickJSContextTemplate template = new QuickJSContextTemplate()
+                .withInitializer(ctx -> ctx.setGlobal("greeting", "Hello"))
+                .withScript("prelude.js", "var state = { count: 0 }; function greet(n) { state.count++; return greeting + ' ' + n; }")
+                .withInitializer(ctx -> initialized.incrementAndGet());
+
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context1 = runtime.createContext(template);
+                QuickJSContext context2 = runtime.createContext(template)) {
+            assertEquals(2, initialized.get());
+
+            assertEquals("Hello World", context1.invoke("greet", "World"));
+            assertEquals("Hello World", context1.invoke("greet", "World"));
+            assertEquals(2, context1.eval("state.count"));
+            // Second context is not affected by the first one
+            assertEquals(0, context2.eval("state.count"));
+        }
+
+        // Templates can be used for other runtimes as well
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = template.createContext(runtime)) {
+            assertEquals("Hello Template", context.invoke("greet", "Template"));
+        }
+
+        // Failing initialization
+        final QuickJSContextTemplate broken = new QuickJSContextTemplate().withScript("broken.js", "var a = ;");
+        try (QuickJSRuntime runtime = new QuickJSRuntime()) {
+            runtime.createContext(broken);
+            fail();
+        } catch (Exception e) {
+            assertInstanceOf(QuickJSScriptException.class, e);
+        }
+    }
+
+    /**
+     * Pooled contexts are reset when returned and can be used from multiple
+     * threads
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void contextPoolTest() throws Exception {
+        final QuickJSContextTemplate template = new QuickJSContextTemplate()
+                .withScript("prelude.js", "function square(a) { return a * a; }");
+
+        try (QuickJSContextPool pool = new QuickJSContextPool(2)
+                .withTemplate(template)
+                .withRuntimeConfiguration(rt -> rt.withScriptRuntimeLimit(1, TimeUnit.SECONDS))
+                .withBorrowTimeout(Duration.ofMillis(50))
+                .withResetPolicy(QuickJSContextPool.ResetPolicy.CLEAR_GLOBALS)
+                .withMaxUses(3)) {
+
+            final QuickJSContext context = pool.borrow();
+            context.setGlobal("a", 3);
+            context.eval("var b = 4; globalThis.c = 5;");
+            assertEquals(9, context.invoke("square", 3));
+            pool.release(context);
+
+            // Globals added by the previous borrower are removed
+            final QuickJSContext reused = pool.borrow();
+            assertTrue(reused == context);
+            assertEquals(null, reused.getGlobal("a"));
+            assertEquals(null, reused.getGlobal("b"));
+            assertEquals(null, reused.getGlobal("c"));
+            assertEquals(16, reused.invoke("square", 4));
+
+            // Pool is exhausted
+            final QuickJSContext second = pool.borrow();
+            try {
+                pool.borrow();
+                fail();
+            } catch (TimeoutException e) {
+                // Expected
+            }
+            pool.release(second);
+            pool.release(reused);
+
+            // Third use -> context is discarded afterwards
+            pool.execute(ctx -> ctx.eval("1"));
+            assertEquals(1, pool.getMetrics().discarded());
+
+            // Concurrent usage
+            final List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int value = i;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return pool.withBorrowTimeout(null).execute(ctx -> ctx.invoke("square", value));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i * i, futures.get(i).get());
+            }
+
+            final QuickJSContextPool.Metrics metrics = pool.getMetrics();
+            assertEquals(0, metrics.active());
+            assertEquals(1, metrics.timeouts());
+            assertTrue(metrics.created() <= metrics.discarded() + 2);
+            assertEquals(12, metrics.borrowed());
+        }
+    }
+
+    /**
+     * By default pooled contexts are discarded when returned, so borrowers are
+     * completely isolated
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void contextPoolIsolationTest() throws Exception {
+        final QuickJSContextPool pool = new QuickJSContextPool(1);
+        try {
+            // Lexical declarations would survive clearing the globals
+            assertEquals(1, (Object) pool.execute(ctx -> ctx.eval("let x = 1; x")));
+            assertEquals(1, (Object) pool.execute(ctx -> ctx.eval("let x = 1; x")));
+            assertEquals(2, pool.getMetrics().discarded());
+
+            // Contexts returned after the pool is closed are discarded, too
+            final QuickJSContext context = pool.withResetPolicy(QuickJSContextPool.ResetPolicy.CLEAR_GLOBALS)
+                    .borrow();
+            pool.close();
+            pool.release(context);
+            assertEquals(0, pool.getMetrics().idle());
+            assertEquals(3, pool.getMetrics().discarded());
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Tasks are executed by thread confined runtimes, tasks with the same key by
+     * the same runtime
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void executorPoolTest() throws Exception {
+        final QuickJSContextTemplate template = new QuickJSContextTemplate()
+                .withScript("prelude.js", "var counter = 0; function next() { return ++counter; }");
+
+        final QuickJSExecutorPool pool = new QuickJSExecutorPool(4).withTemplate(template);
+        try {
+            final List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final int value = i;
+                futures.add(pool.submit(ctx -> ctx.eval(value + " * 2")));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i * 2, futures.get(i).get());
+            }
+
+            // Same key -> same context
+            final List<CompletableFuture<Object>> tenant = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                tenant.add(pool.submit("tenant-a", ctx -> ctx.invoke("next")));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i + 1, tenant.get(i).get());
+            }
+
+            // A worker busy with a long running task is not considered idle
+            final CountDownLatch running = new CountDownLatch(1);
+            final CountDownLatch finish = new CountDownLatch(1);
+            final CompletableFuture<Object> blocking = pool.submit(ctx -> {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            running.await();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1, pool.submit(ctx -> ctx.eval("1")).get(5, TimeUnit.SECONDS));
+            }
+            finish.countDown();
+            blocking.get();
+
+            // Exceptions complete the future exceptionally
+            try {
+                pool.submit(ctx -> ctx.eval("throw new Error('failed')")).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertInstanceOf(QuickJSScriptException.class, e.getCause());
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        try {
+            pool.submit(ctx -> ctx.eval("1"));
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Scripts are evaluated asynchronously and can be cancelled while running
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void asyncEvalTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+            context.eval("function add(a, b) { return a + b; }");
+
+            assertEquals(7, context.evalAsync("3 + 4").get(1, TimeUnit.SECONDS));
+            assertEquals(5, context.invokeAsync("add", 2, 3).get(1, TimeUnit.SECONDS));
+
+            final CountDownLatch started = new CountDownLatch(1);
+            context.setGlobal("started", () -> {
+                started.countDown();
+                return true;
+            });
+            final CompletableFuture<Object> endless = context.evalAsync("started(); while (true) {}");
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            // The runtime is not thread safe, so other threads can not use it meanwhile
+            try {
+                context.eval("1");
+                fail("Runtime must not be used while asynchronous scripts are pending");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+
+            assertTrue(endless.cancel(true));
+            assertTrue(endless.isCancelled());
+
+            // Runtime is usable again after the script was interrupted
+            assertEquals(2, context.evalAsync("1 + 1").get(1, TimeUnit.SECONDS));
+            // ... and from the calling thread, too
+            assertEquals(3, context.eval("1 + 2"));
+
+            try {
+                context.evalAsync("throw new Error('async')").get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertInstanceOf(QuickJSScriptException.class, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Calls from virtual threads are executed by the few platform threads of the
+     * pool. The throughput of the pool is measured in
+     * {@link ExecutorPoolBenchmark}.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void virtualThreadTest() throws Exception {
+        final int requests = 100;
+        try (QuickJSExecutorPool pool = new QuickJSExecutorPool(4).withTemplate(new QuickJSContextTemplate()
+                .withScript("handler.js", "function handle(id) { let s = 0; for (let i = 0; i < 100; i++) { s += i; } return id + s; }"))) {
+
+            final AtomicInteger completed = new AtomicInteger();
+            try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < requests; i++) {
+                    final int id = i;
+                    virtualThreads.submit(() -> {
+                        final Object result = pool.call(ctx -> ctx.invoke("handle", id));
+                        if (Integer.valueOf(id + 4950).equals(result)) {
+                            completed.incrementAndGet();
+                        }
+                        return result;
+                    });
+                }
+            }
+            assertEquals(requests, completed.get());
+
+            final QuickJSExecutorPool.Metrics metrics = pool.getMetrics();
+            assertEquals(requests, metrics.completed());
+            assertEquals(0, metrics.queued());
+            assertEquals(4, metrics.workers());
+        }
+    }
+
+    /**
+     * JS Promises are returned as CompletableFuture, which are completed when the
+     * pending jobs are executed
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void promiseTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            final Object resolved = context.eval("Promise.resolve(42)");
+            assertInstanceOf(CompletableFuture.class, resolved);
+            final CompletableFuture<?> future = (CompletableFuture<?>) resolved;
+            assertFalse(future.isDone());
+            assertTrue(runtime.isJobPending());
+            assertTrue(runtime.executePendingJobs() > 0);
+            assertFalse(runtime.isJobPending());
+            assertEquals(42, future.get(1, TimeUnit.SECONDS));
+
+            // Async functions awaiting several promises
+            context.eval("async function sum(a, b) { const [x, y] = await Promise.all([a, b]); return x + y; }");
+            final CompletableFuture<?> sum = (CompletableFuture<?>) context.eval("sum(Promise.resolve(1), Promise.resolve(2))");
+            runtime.executePendingJobs();
+            assertEquals(3, sum.get(1, TimeUnit.SECONDS));
+
+            // Rejected promises complete the future exceptionally
+            final CompletableFuture<?> rejected = (CompletableFuture<?>) context
+                    .eval("Promise.reject(new Error('rejected'))");
+            runtime.executePendingJobs();
+            try {
+                rejected.get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertInstanceOf(QuickJSScriptException.class, e.getCause());
+            }
+
+            // Limit the number of executed jobs
+            context.eval("var chain = Promise.resolve(0); for (let i = 0; i < 10; i++) { chain = chain.then(v => v + 1); }");
+            assertEquals(1, runtime.executePendingJobs(1));
+            assertTrue(runtime.isJobPending());
+            runtime.executePendingJobs();
+
+            // Jobs scheduled by an asynchronous script are executed on this thread,
+            // which requires the stack top to be updated
+            final CompletableFuture<?> recursion = (CompletableFuture<?>) context
+                    .evalAsync("function depth(n) { return n === 0 ? 0 : 1 + depth(n - 1); };"
+                            + "Promise.resolve(1000).then(depth)")
+                    .get(5, TimeUnit.SECONDS);
+            runtime.executePendingJobs();
+            assertEquals(1000, recursion.get(1, TimeUnit.SECONDS));
+
+            // Interrupted jobs fail and leave the remaining jobs pending
+            runtime.withScriptRuntimeLimit(200, TimeUnit.MILLISECONDS);
+            context.eval("var after = false; Promise.resolve().then(() => { while (true) {} });"
+                    + "Promise.resolve().then(() => { after = true; })");
+            try {
+                runtime.executePendingJobs();
+                fail("Job should have been interrupted");
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("interrupted"));
+            }
+            assertEquals(false, context.getGlobal("after"));
+            assertTrue(runtime.isJobPending());
+            runtime.executePendingJobs();
+            assertEquals(true, context.getGlobal("after"));
+        }
+    }
+
+    /**
+     * Java functions returning a CompletableFuture are awaited in JS as Promises
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void completionStageTest() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+
+            // Each of the first four lookups waits until all four are running at once
+            final CountDownLatch running = new CountDownLatch(4);
+            final AtomicInteger sequential = new AtomicInteger();
+            final Function<Integer, CompletableFuture<Integer>> lookup = id -> CompletableFuture.supplyAsync(() -> {
+                running.countDown();
+                try {
+                    if (!running.await(2, TimeUnit.SECONDS)) {
+                        sequential.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return id * 2;
+            }, executor);
+            context.setGlobal("lookup", lookup);
+            context.setGlobal("fail", (Supplier<CompletableFuture<Object>>) () -> CompletableFuture
+                    .failedFuture(new IllegalStateException("lookup failed")));
+
+            final CompletableFuture<?> result = (CompletableFuture<?>) context.eval(
+                    "(async () => { const values = await Promise.all([1, 2, 3, 4, 5, 6, 7, 8].map(lookup)); return values.reduce((a, b) => a + b, 0); })()");
+
+            final long start = System.nanoTime();
+            while (!result.isDone() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                runtime.executePendingJobs();
+                Thread.sleep(5);
+            }
+            assertEquals(72, result.get(1, TimeUnit.SECONDS));
+            // All lookups were started before the first one completed
+            assertEquals(0, sequential.get());
+
+            // Failed futures reject the promise with the mapped Java exception
+            final CompletableFuture<?> failed = (CompletableFuture<?>) context
+                    .eval("fail().then(() => 'resolved', e => e.message)");
+            runtime.executePendingJobs();
+            assertEquals("lookup failed", failed.get(1, TimeUnit.SECONDS));
+
+            // Never completed futures are released with the context
+            context.eval("var never = lookup(1).then(() => new Promise(() => {}))");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Timers are executed by the event loop of the runtime
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void eventLoopTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime().withScriptRuntimeLimit(500, TimeUnit.MILLISECONDS);
+                QuickJSContext context = runtime.createContext().withEventLoop()) {
+
+            context.eval("var log = []; setTimeout((a, b) => log.push('timeout ' + (a + b)), 20, 1, 2);"
+                    + "queueMicrotask(() => log.push('microtask'));"
+                    + "var count = 0; var interval = setInterval(() => { if (++count === 3) clearInterval(interval); }, 5);"
+                    + "var cancelled = setTimeout(() => log.push('cancelled'), 10); clearTimeout(cancelled);");
+            assertTrue(runtime.runEventLoop(Duration.ofSeconds(5)));
+            assertEquals(List.of("microtask", "timeout 3"), context.eval("log"));
+            assertEquals(3, context.getGlobal("count"));
+
+            // Timer functions are not enumerable, like other built-in globals
+            assertFalse(context.getGlobalNames().contains("setTimeout"));
+
+            // Runaway callbacks are interrupted by the script runtime limit without
+            // stopping the event loop
+            context.eval("setTimeout(() => { while (true) {} }, 0); setTimeout(() => log.push('after'), 10)");
+            assertTrue(runtime.runEventLoop(Duration.ofSeconds(5)));
+            assertEquals("after", context.eval("log[2]"));
+
+            // Pending timers are cancelled with the context
+            context.eval("setTimeout(() => log.push('late'), 60000)");
+            assertFalse(runtime.runEventLoop(Duration.ofMillis(20)));
+        }
+    }
+
+    /**
+     * Invoke a function for many argument tuples within a single native call
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void invokeBatchTest() throws Exception {
+        try (QuickJSRuntime runtime = new QuickJSRuntime();
+                QuickJSContext context = runtime.createContext()) {
+            context.eval("function add(a, b) { return a + b; } var ns = { neg: (a) => -a, fail: (a) => { if (a > 1) throw new Error('too large ' + a); return a; } };");
+
+            final List<Object[]> tuples = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                tuples.add(new Object[] { i, 1 });
+            }
+            final List<Object> results = context.invokeBatch("add", tuples);
+            assertEquals(10_000, results.size());
+            assertEquals(1, results.get(0));
+            assertEquals(10_000, results.get(9_999));
+
+            // Namespaced functions and caller provided result arrays
+            final Object[] negated = new Object[3];
+            context.invokeBatch("ns.neg", new Object[][] { { 1 }, { 2 }, { 3 } }, negated);
+            assertArrayEquals(new Object[] { -1, -2, -3 }, negated);
+
+            // Stops at the first failed call, previous results are kept
+            final Object[] partial = new Object[3];
+            try {
+                context.invokeBatch("ns.fail", new Object[][] { { 1 }, { 2 }, { 3 } }, partial);
+                fail();
+            } catch (QuickJSScriptException e) {
+                assertTrue(e.getMessage().contains("too large 2"));
+            }
+            assertEquals(1, partial[0]);
+            assertEquals(null, partial[2]);
+
+            try {
+                context.invokeBatch("add", new Object[][] { { 1, 2 } }, new Object[0]);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
     /**
      * Test the utility method createMapOf which provides a rather incomplete
      * mapping of generic objects into Maps of functions.
@@ -0,0 +1,86 @@
+package com.github.stefanrichterhuber.quickjs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares evaluating a script from source with executing the same script
+ * precompiled to bytecode, either explicitly or by the script cache of the
+ * runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+    private static final String SOURCE = """
+            (() => {
+                function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }
+                const values = [];
+                for (let i = 0; i < 10; i++) { values.push(fib(i)); }
+                return values.map(v => 'value ' + v).join(', ');
+            })();
+            """;
+
+    private QuickJSRuntime runtime;
+    private QuickJSContext context;
+    private QuickJSScript script;
+    private QuickJSRuntime cachingRuntime;
+    private QuickJSContext cachingContext;
+
+    @Setup
+    public void setup() {
+        runtime = new QuickJSRuntime();
+        context = runtime.createContext();
+        script = context.compile("benchmark.js", SOURCE);
+
+        cachingRuntime = new QuickJSRuntime().withScriptCache(1024 * 1024);
+        cachingContext = cachingRuntime.createContext();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        runtime.close();
+        cachingContext.close();
+        cachingRuntime.close();
+    }
+
+    /**
+     * Parses, compiles and executes the source on each invocation
+     */
+    @Benchmark
+    public Object eval() {
+        return context.eval(SOURCE);
+    }
+
+    /**
+     * Executes the precompiled bytecode on each invocation
+     */
+    @Benchmark
+    public Object execute() {
+        return script.execute(context);
+    }
+
+    /**
+     * Evaluates the source on each invocation, the compiled script is taken from
+     * the script cache
+     */
+    @Benchmark
+    public Object evalCached() {
+        return cachingContext.eval(SOURCE);
+    }
+}